@@ -0,0 +1,434 @@
+package com.dpizarro.pinview.library;
+
+import android.annotation.SuppressLint;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.text.InputType;
+import android.text.TextPaint;
+import android.view.KeyEvent;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.inputmethod.BaseInputConnection;
+import android.view.inputmethod.EditorInfo;
+import android.view.inputmethod.InputConnection;
+import android.widget.EditText;
+
+import java.util.Arrays;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * Single {@link View} used by {@link PinView} when {@link PinViewBaseHelper#mCanvasMode} is enabled.
+ *
+ * Instead of one PinBox {@link EditText} per box plus one {@link android.widget.TextView} per split and title,
+ * every box, character, mask, split and title is drawn straight onto the {@link Canvas}. The characters are kept
+ * in a single input model, {@link PinBuffer}.
+ */
+@SuppressLint("ViewConstructor")
+class PinCanvasView extends View {
+
+    private static final char MASK_CHARACTER = '\u2022';
+    private static final int DEFAULT_INPUT_TYPE = InputType.TYPE_CLASS_NUMBER
+            | InputType.TYPE_NUMBER_VARIATION_PASSWORD;
+
+    private final PinViewBaseHelper mPinView;
+    private final TextPaint mPinBoxPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+    private final TextPaint mTitlePaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+    private final TextPaint mSplitPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint.FontMetricsInt mFontMetrics = new Paint.FontMetricsInt();
+    private final Rect mPinBoxBounds = new Rect();
+    private final int mPinBoxMargin;
+    private final int mPinBoxPadding;
+    private Drawable mPinBoxDrawable;
+    private char[] mMaskCharacters;
+
+    private final PinBuffer mPinBuffer;
+    private char[] mPinBoxValue = new char[0];
+    private int mInputType = DEFAULT_INPUT_TYPE;
+    private int mFocusedPinBox;
+
+    /**
+     * Default constructor
+     *
+     * @param pinView {@link PinViewBaseHelper} which owns this view and holds every attribute
+     */
+    PinCanvasView(PinViewBaseHelper pinView) {
+        super(pinView.getContext());
+        mPinView = pinView;
+        mPinBuffer = pinView.mPinBuffer;
+        mPinBoxMargin = getResources().getDimensionPixelSize(R.dimen.space_between_pinbox);
+        mPinBoxPadding = getResources().getDimensionPixelSize(R.dimen.edittext_padding);
+        mPinBoxPaint.setTextAlign(Paint.Align.CENTER);
+        mTitlePaint.setTextAlign(Paint.Align.CENTER);
+        mSplitPaint.setTextAlign(Paint.Align.CENTER);
+        setFocusable(true);
+        setFocusableInTouchMode(true);
+        refreshStyles();
+    }
+
+    /**
+     * @return input type sent to the keyboard (see {@link InputType})
+     */
+    int getInputType() {
+        return mInputType;
+    }
+
+    /**
+     * Set the number of PinBoxes to draw, already applied to {@link PinViewBaseHelper#mPinBuffer}.
+     *
+     * @param inputType input type sent to the keyboard (see {@link InputType}), or -1 to keep the default one
+     */
+    void setPin(int inputType) {
+        mInputType = inputType != -1 ? inputType : DEFAULT_INPUT_TYPE;
+        mFocusedPinBox = Math.max(0, Math.min(mFocusedPinBox, getNumberPinBoxes() - 1));
+        refreshStyles();
+    }
+
+    /**
+     * Read again every attribute from {@link PinViewBaseHelper} and redraw.
+     */
+    void refreshStyles() {
+        int numberCharacters = mPinBuffer.getNumberCharacters();
+        if (mMaskCharacters == null || mMaskCharacters.length != numberCharacters) {
+            mMaskCharacters = new char[numberCharacters];
+            Arrays.fill(mMaskCharacters, MASK_CHARACTER);
+            mPinBoxValue = new char[numberCharacters];
+        }
+
+        PinViewStyleCache.ResolvedStyle style = mPinView.getResolvedStyle();
+        mPinBoxPaint.setColor(style.mColorTextPinBoxes);
+        mPinBoxPaint.setTextSize(style.mPaintTextSizePinBoxes);
+        mTitlePaint.setColor(style.mColorTextTitles);
+        mTitlePaint.setTextSize(style.mPaintTextSizeTitles);
+        mSplitPaint.setColor(style.mColorSplit);
+        mSplitPaint.setTextSize(style.mPaintSizeSplit);
+
+        if (mPinView.mNativePinBox) {
+            mPinBoxDrawable = PinViewDrawables.getNativePinBox(getContext());
+        } else {
+            mPinBoxDrawable = PinViewDrawables.getCustomPinBox(getContext(), mPinView.mCustomDrawablePinBox);
+        }
+
+        requestLayout();
+        invalidate();
+    }
+
+    private int getNumberPinBoxes() {
+        return mPinBuffer.getNumberPinBoxes();
+    }
+
+    private boolean hasSplit() {
+        return mPinView.mSplit != null && !mPinView.mSplit.isEmpty();
+    }
+
+    private boolean hasTitles() {
+        return mPinView.mPinTitles != null && mPinView.mPinTitles.length > 0;
+    }
+
+    private int getTextHeight(Paint paint) {
+        paint.getFontMetricsInt(mFontMetrics);
+        return mFontMetrics.bottom - mFontMetrics.top;
+    }
+
+    private int getTitlesHeight() {
+        return hasTitles() ? getTextHeight(mTitlePaint) : 0;
+    }
+
+    private int getPinBoxHeight() {
+        int height = getTextHeight(mPinBoxPaint) + 2 * mPinBoxPadding;
+        return mPinBoxDrawable != null ? Math.max(height, mPinBoxDrawable.getMinimumHeight()) : height;
+    }
+
+    private float getSplitWidth() {
+        return hasSplit() ? mSplitPaint.measureText(mPinView.mSplit) : 0;
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int numberPinBoxes = getNumberPinBoxes();
+        int pinBoxWidth = (int) mPinBoxPaint.measureText("0") * Math.max(mPinBuffer.getNumberCharacters(), 1)
+                + 2 * mPinBoxPadding;
+        int width = getPaddingLeft() + getPaddingRight() + numberPinBoxes * (pinBoxWidth + 2 * mPinBoxMargin)
+                + (int) (getSplitWidth() * Math.max(numberPinBoxes - 1, 0));
+        int pinBoxesHeight = Math.max(getPinBoxHeight() + 2 * mPinBoxMargin, hasSplit() ? getTextHeight(mSplitPaint) : 0);
+        int height = getPaddingTop() + getPaddingBottom() + getTitlesHeight() + pinBoxesHeight;
+
+        setMeasuredDimension(resolveSize(width, widthMeasureSpec), resolveSize(height, heightMeasureSpec));
+    }
+
+    /**
+     * Width of each PinBox including its margins, the splits keep their own width.
+     */
+    private float getPinBoxSlot() {
+        int width = getWidth() - getPaddingLeft() - getPaddingRight();
+        return (width - getSplitWidth() * (getNumberPinBoxes() - 1)) / getNumberPinBoxes();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        int numberPinBoxes = getNumberPinBoxes();
+        if (numberPinBoxes == 0) {
+            return;
+        }
+
+        int top = getPaddingTop();
+        if (hasTitles()) {
+            drawTitles(canvas, top);
+            top += getTitlesHeight();
+        }
+
+        float slot = getPinBoxSlot();
+        float splitWidth = getSplitWidth();
+        int pinBoxHeight = getPinBoxHeight();
+        int pinBoxTop = top + mPinBoxMargin;
+        float x = getPaddingLeft();
+
+        for (int i = 0; i < numberPinBoxes; i++) {
+            mPinBoxBounds.set((int) (x + mPinBoxMargin), pinBoxTop, (int) (x + slot - mPinBoxMargin),
+                    pinBoxTop + pinBoxHeight);
+            drawPinBox(canvas, i);
+            x += slot;
+            if (splitWidth > 0 && i < numberPinBoxes - 1) {
+                canvas.drawText(mPinView.mSplit, x + splitWidth / 2,
+                        getBaseline(mSplitPaint, mPinBoxBounds.centerY()), mSplitPaint);
+                x += splitWidth;
+            }
+        }
+    }
+
+    private void drawTitles(Canvas canvas, int top) {
+        String[] titles = mPinView.mPinTitles;
+        float slot = (getWidth() - getPaddingLeft() - getPaddingRight()) / (float) titles.length;
+        float baseline = getBaseline(mTitlePaint, top + getTitlesHeight() / 2f);
+        for (int i = 0; i < titles.length; i++) {
+            if (titles[i] != null) {
+                canvas.drawText(titles[i], getPaddingLeft() + slot * i + slot / 2, baseline, mTitlePaint);
+            }
+        }
+    }
+
+    private void drawPinBox(Canvas canvas, int i) {
+        if (mPinBoxDrawable != null) {
+            mPinBoxDrawable.setState(isFocused() && i == mFocusedPinBox ? ENABLED_FOCUSED_STATE_SET : ENABLED_STATE_SET);
+            mPinBoxDrawable.jumpToCurrentState();
+            mPinBoxDrawable.setBounds(mPinBoxBounds);
+            mPinBoxDrawable.draw(canvas);
+        }
+
+        int length = mPinBuffer.getPinBoxLength(i);
+        if (length > 0) {
+            float baseline = getBaseline(mPinBoxPaint, mPinBoxBounds.centerY());
+            if (mPinView.mMaskPassword) {
+                canvas.drawText(mMaskCharacters, 0, length, mPinBoxBounds.centerX(), baseline, mPinBoxPaint);
+            } else {
+                mPinBuffer.getPinBox(i, mPinBoxValue, 0);
+                canvas.drawText(mPinBoxValue, 0, length, mPinBoxBounds.centerX(), baseline, mPinBoxPaint);
+            }
+        }
+    }
+
+    private float getBaseline(Paint paint, float centerY) {
+        paint.getFontMetricsInt(mFontMetrics);
+        return centerY - (mFontMetrics.ascent + mFontMetrics.descent) / 2f;
+    }
+
+    /**
+     * Find the PinBox drawn at a horizontal position
+     *
+     * @param x horizontal position in this view
+     * @return PinBox position
+     */
+    private int getPinBoxAt(float x) {
+        float slot = getPinBoxSlot() + getSplitWidth();
+        int index = (int) ((x - getPaddingLeft()) / slot);
+        return Math.max(0, Math.min(index, getNumberPinBoxes() - 1));
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (event.getAction() == MotionEvent.ACTION_UP && getNumberPinBoxes() > 0) {
+            requestFocus();
+            selectPinBox(getPinBoxAt(event.getX()));
+            mPinView.setImeVisibility(true);
+            performClick();
+        }
+        return true;
+    }
+
+    @Override
+    public boolean performClick() {
+        return super.performClick();
+    }
+
+    /**
+     * Same behaviour as the focus of a PinBox {@link EditText}: it's cleared if
+     * {@link PinViewBaseHelper#mDeleteOnClick} is enabled and a completed {@link PinView} is notified as not completed.
+     *
+     * @param index PinBox position
+     */
+    private void selectPinBox(int index) {
+        mFocusedPinBox = index;
+        if (mPinView.mDeleteOnClick) {
+            mPinBuffer.clearPinBox(index);
+            mPinView.notifyPinViewChanged();
+        }
+        mPinView.notifyPinViewNotCompleted();
+        invalidate();
+    }
+
+    @Override
+    protected void onFocusChanged(boolean gainFocus, int direction, Rect previouslyFocusedRect) {
+        super.onFocusChanged(gainFocus, direction, previouslyFocusedRect);
+        if (gainFocus) {
+            mPinView.setImeVisibility(true);
+        }
+        invalidate();
+    }
+
+    @Override
+    public boolean onCheckIsTextEditor() {
+        return true;
+    }
+
+    @Override
+    public InputConnection onCreateInputConnection(EditorInfo outAttrs) {
+        outAttrs.inputType = mInputType;
+        outAttrs.imeOptions = EditorInfo.IME_FLAG_NO_EXTRACT_UI | EditorInfo.IME_ACTION_DONE;
+        return new PinInputConnection();
+    }
+
+    @Override
+    public boolean onKeyDown(int keyCode, KeyEvent event) {
+        if (getNumberPinBoxes() == 0) {
+            return super.onKeyDown(keyCode, event);
+        }
+        if (keyCode == KeyEvent.KEYCODE_DEL) {
+            deleteCharacter();
+            return true;
+        }
+        int unicodeChar = event.getUnicodeChar();
+        if (unicodeChar != 0 && !Character.isISOControl(unicodeChar)) {
+            typeCharacter((char) unicodeChar);
+            return true;
+        }
+        return super.onKeyDown(keyCode, event);
+    }
+
+    @Override
+    public boolean onKeyMultiple(int keyCode, int repeatCount, KeyEvent event) {
+        String characters = event.getCharacters();
+        if (keyCode == KeyEvent.KEYCODE_UNKNOWN && characters != null && getNumberPinBoxes() > 0) {
+            for (int i = 0; i < characters.length(); i++) {
+                typeCharacter(characters.charAt(i));
+            }
+            return true;
+        }
+        return super.onKeyMultiple(keyCode, repeatCount, event);
+    }
+
+    /**
+     * Write a character in the current PinBox. Once it is full, move to the next empty PinBox or notify that
+     * {@link PinView} is completed, with the same order used by the PinBoxes {@link EditText}.
+     *
+     * @param character typed character
+     */
+    private void typeCharacter(char character) {
+        if (!PinViewBaseHelper.isAccepted(mInputType, character)) {
+            return;
+        }
+        int index = mFocusedPinBox;
+        if (!mPinBuffer.append(index, character)) {
+            return;
+        }
+        mPinView.notifyPinViewChanged();
+        invalidate();
+
+        if (mPinBuffer.getPinBoxLength(index) == mPinBuffer.getNumberCharacters()) {
+            int next = findEmptyPinBox(index + 1);
+            if (next == -1) {
+                mPinView.notifyPinViewCompleted();
+            } else {
+                mFocusedPinBox = next;
+            }
+        }
+    }
+
+    /**
+     * Check for an empty PinBox from a position, going back to the first one when the last one is reached.
+     *
+     * @param from first PinBox position to check
+     * @return position of an empty PinBox or -1 if every PinBox is filled
+     */
+    private int findEmptyPinBox(int from) {
+        return mPinBuffer.nextEmptyPinBoxWrapping(from);
+    }
+
+    /**
+     * Delete the last character of the current PinBox, or of the previous one if it is already empty.
+     */
+    private void deleteCharacter() {
+        if (mPinBuffer.getPinBoxLength(mFocusedPinBox) == 0 && mFocusedPinBox > 0) {
+            mFocusedPinBox--;
+        }
+        if (mPinBuffer.deleteLast(mFocusedPinBox)) {
+            mPinView.notifyPinViewChanged();
+        }
+        invalidate();
+    }
+
+    /**
+     * Select the PinBox which receives the next characters
+     *
+     * @param index PinBox position
+     */
+    void setFocusedPinBox(int index) {
+        mFocusedPinBox = index;
+        invalidate();
+    }
+
+    /**
+     * Clear PinBoxes values and go back to the first PinBox
+     */
+    void clear() {
+        mPinBuffer.wipe();
+        mPinView.notifyPinViewChanged();
+        mPinView.notifyPinViewNotCompleted();
+        mFocusedPinBox = 0;
+        requestFocus();
+        invalidate();
+    }
+
+    /**
+     * Every text sent by the keyboard is received as key events, see {@link #onKeyDown(int, KeyEvent)}.
+     */
+    private class PinInputConnection extends BaseInputConnection {
+
+        PinInputConnection() {
+            super(PinCanvasView.this, false);
+        }
+
+        @Override
+        public boolean deleteSurroundingText(int beforeLength, int afterLength) {
+            for (int i = 0; i < beforeLength && getNumberPinBoxes() > 0; i++) {
+                deleteCharacter();
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package com.dpizarro.pinview.library;
+
+import android.content.Context;
+import android.util.AttributeSet;
+import android.view.View;
+import android.view.ViewGroup;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * Container of the titles, PinBoxes and splits of a {@link PinView}.
+ *
+ * Titles are placed in a row over the PinBoxes, and PinBoxes share the width left by the splits, as the weighted
+ * {@link android.widget.LinearLayout}s did. Every child is measured only once for each measure of this layout: splits
+ * first, then PinBoxes with their exact width, then titles with the width of their column.
+ *
+ * Children are kept in order: first every title, then PinBoxes and splits in the order they are shown.
+ * There is no title row: titles are only created by {@link PinView#setTitles(String[])}, so without titles nothing
+ * about them is measured, laid out or allocated.
+ */
+class PinLayout extends ViewGroup {
+
+    static final int TYPE_TITLE = 0;
+    static final int TYPE_PIN_BOX = 1;
+    static final int TYPE_SPLIT = 2;
+
+    private int mTitlesHeight;
+    private int mPinBoxesHeight;
+    private int mPinBoxWidth;
+    private int[] mPinBoxLefts = new int[0];
+
+    public PinLayout(Context context) {
+        super(context);
+    }
+
+    public PinLayout(Context context, AttributeSet attrs) {
+        super(context, attrs);
+    }
+
+    /**
+     * Add a title
+     *
+     * @param title title to add
+     * @param index position of the title in the row of titles
+     */
+    void addTitle(View title, int index) {
+        addChild(title, index, TYPE_TITLE);
+    }
+
+    /**
+     * Add a PinBox or a split
+     *
+     * @param child PinBox or split to add
+     * @param index position of the child in the row of PinBoxes and splits
+     * @param type {@link #TYPE_PIN_BOX} or {@link #TYPE_SPLIT}
+     */
+    void addPinBoxOrSplit(View child, int index, int type) {
+        addChild(child, getTitleCount() + index, type);
+    }
+
+    private void addChild(View child, int index, int type) {
+        ViewGroup.LayoutParams params = child.getLayoutParams();
+        LayoutParams layoutParams = params == null ? generateDefaultLayoutParams()
+                : checkLayoutParams(params) ? (LayoutParams) params : generateLayoutParams(params);
+        layoutParams.type = type;
+        addView(child, index, layoutParams);
+    }
+
+    /**
+     * @return number of titles, which are always the first children
+     */
+    int getTitleCount() {
+        int count = 0;
+        while (count < getChildCount() && getLayoutType(getChildAt(count)) == TYPE_TITLE) {
+            count++;
+        }
+        return count;
+    }
+
+    private static int getLayoutType(View child) {
+        return ((LayoutParams) child.getLayoutParams()).type;
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int childCount = getChildCount();
+        int horizontalPadding = getPaddingLeft() + getPaddingRight();
+        int verticalPadding = getPaddingTop() + getPaddingBottom();
+
+        int titles = 0;
+        int pinBoxes = 0;
+        int pinBoxMargins = 0;
+        int splitsWidth = 0;
+        int splitsHeight = 0;
+        for (int i = 0; i < childCount; i++) {
+            View child = getChildAt(i);
+            if (child.getVisibility() == GONE) {
+                continue;
+            }
+            LayoutParams params = (LayoutParams) child.getLayoutParams();
+            if (params.type == TYPE_TITLE) {
+                titles++;
+            } else if (params.type == TYPE_PIN_BOX) {
+                pinBoxes++;
+                pinBoxMargins += params.leftMargin + params.rightMargin;
+            } else {
+                child.measure(getChildMeasureSpec(widthMeasureSpec, horizontalPadding, params.width),
+                        getChildMeasureSpec(heightMeasureSpec, verticalPadding, ViewGroup.LayoutParams.WRAP_CONTENT));
+                splitsWidth += child.getMeasuredWidth() + params.leftMargin + params.rightMargin;
+                splitsHeight = Math.max(splitsHeight,
+                        child.getMeasuredHeight() + params.topMargin + params.bottomMargin);
+            }
+        }
+
+        int widthMode = MeasureSpec.getMode(widthMeasureSpec);
+        int availableWidth = MeasureSpec.getSize(widthMeasureSpec) - horizontalPadding;
+        int pinBoxesWidth = availableWidth - splitsWidth - pinBoxMargins;
+        boolean fixedWidth = widthMode != MeasureSpec.UNSPECIFIED && pinBoxes > 0;
+        mPinBoxWidth = fixedWidth ? Math.max(pinBoxesWidth / pinBoxes, 0) : 0;
+
+        int pinBoxesHeight = splitsHeight;
+        int maxPinBoxWidth = 0;
+        for (int i = 0; i < childCount; i++) {
+            View child = getChildAt(i);
+            LayoutParams params = (LayoutParams) child.getLayoutParams();
+            if (child.getVisibility() == GONE || params.type != TYPE_PIN_BOX) {
+                continue;
+            }
+            int childWidthMeasureSpec = fixedWidth ? MeasureSpec.makeMeasureSpec(mPinBoxWidth, MeasureSpec.EXACTLY)
+                    : MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED);
+            child.measure(childWidthMeasureSpec, getChildMeasureSpec(heightMeasureSpec,
+                    verticalPadding + params.topMargin + params.bottomMargin, params.height));
+            maxPinBoxWidth = Math.max(maxPinBoxWidth, child.getMeasuredWidth());
+            pinBoxesHeight = Math.max(pinBoxesHeight,
+                    child.getMeasuredHeight() + params.topMargin + params.bottomMargin);
+        }
+        if (!fixedWidth) {
+            mPinBoxWidth = maxPinBoxWidth;
+        }
+
+        int contentWidth = fixedWidth ? availableWidth : pinBoxes * mPinBoxWidth + pinBoxMargins + splitsWidth;
+        int titlesHeight = 0;
+        //Titles are the first children, so without titles this loop ends at once
+        for (int i = 0; i < childCount && titles > 0; i++) {
+            View child = getChildAt(i);
+            LayoutParams params = (LayoutParams) child.getLayoutParams();
+            if (params.type != TYPE_TITLE) {
+                break;
+            }
+            if (child.getVisibility() == GONE) {
+                continue;
+            }
+            int column = getTitleColumnWidth(titles, pinBoxes, pinBoxMargins, contentWidth);
+            child.measure(MeasureSpec.makeMeasureSpec(Math.max(column - params.leftMargin - params.rightMargin, 0),
+                    MeasureSpec.EXACTLY), getChildMeasureSpec(heightMeasureSpec,
+                    verticalPadding + params.topMargin + params.bottomMargin, params.height));
+            titlesHeight = Math.max(titlesHeight, child.getMeasuredHeight() + params.topMargin + params.bottomMargin);
+        }
+
+        mTitlesHeight = titlesHeight;
+        mPinBoxesHeight = pinBoxesHeight;
+        setMeasuredDimension(resolveSize(contentWidth + horizontalPadding, widthMeasureSpec),
+                resolveSize(titlesHeight + pinBoxesHeight + verticalPadding, heightMeasureSpec));
+    }
+
+    /**
+     * Titles are aligned with the PinBoxes when there is one title for each PinBox,
+     * otherwise they share the whole width.
+     */
+    private int getTitleColumnWidth(int titles, int pinBoxes, int pinBoxMargins, int contentWidth) {
+        if (titles == pinBoxes) {
+            return mPinBoxWidth + pinBoxMargins / pinBoxes;
+        }
+        return contentWidth / titles;
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        int childCount = getChildCount();
+        int titles = getTitleCount();
+        //Left of each PinBox is only needed to align titles
+        if (titles > 0 && mPinBoxLefts.length < childCount) {
+            mPinBoxLefts = new int[childCount];
+        }
+
+        int pinBoxesTop = getPaddingTop() + mTitlesHeight;
+        int pinBoxes = 0;
+        int x = getPaddingLeft();
+        for (int i = titles; i < childCount; i++) {
+            View child = getChildAt(i);
+            if (child.getVisibility() == GONE) {
+                continue;
+            }
+            LayoutParams params = (LayoutParams) child.getLayoutParams();
+            int left = x + params.leftMargin;
+            int top;
+            if (params.type == TYPE_PIN_BOX) {
+                if (titles > 0) {
+                    mPinBoxLefts[pinBoxes] = x;
+                }
+                pinBoxes++;
+                top = pinBoxesTop + params.topMargin;
+            } else {
+                top = pinBoxesTop + (mPinBoxesHeight - child.getMeasuredHeight()) / 2;
+            }
+            child.layout(left, top, left + child.getMeasuredWidth(), top + child.getMeasuredHeight());
+            x = left + child.getMeasuredWidth() + params.rightMargin;
+        }
+
+        int titlesTop = getPaddingTop();
+        boolean aligned = titles == pinBoxes;
+        for (int i = 0; i < titles; i++) {
+            View child = getChildAt(i);
+            if (child.getVisibility() == GONE) {
+                continue;
+            }
+            LayoutParams params = (LayoutParams) child.getLayoutParams();
+            int column = params.leftMargin + child.getMeasuredWidth() + params.rightMargin;
+            int left = (aligned ? mPinBoxLefts[i] : getPaddingLeft() + column * i) + params.leftMargin;
+            int top = titlesTop + params.topMargin;
+            child.layout(left, top, left + child.getMeasuredWidth(), top + child.getMeasuredHeight());
+        }
+    }
+
+    @Override
+    protected LayoutParams generateDefaultLayoutParams() {
+        return new LayoutParams(ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.WRAP_CONTENT);
+    }
+
+    @Override
+    public LayoutParams generateLayoutParams(AttributeSet attrs) {
+        return new LayoutParams(getContext(), attrs);
+    }
+
+    @Override
+    protected LayoutParams generateLayoutParams(ViewGroup.LayoutParams p) {
+        if (p instanceof MarginLayoutParams) {
+            return new LayoutParams((MarginLayoutParams) p);
+        }
+        return new LayoutParams(p);
+    }
+
+    @Override
+    protected boolean checkLayoutParams(ViewGroup.LayoutParams p) {
+        return p instanceof LayoutParams;
+    }
+
+    /**
+     * Layout params of a child of {@link PinLayout}, with its type: {@link #TYPE_TITLE}, {@link #TYPE_PIN_BOX} or
+     * {@link #TYPE_SPLIT}. Widths of PinBoxes and titles are given by the layout.
+     */
+    static class LayoutParams extends MarginLayoutParams {
+
+        int type = TYPE_PIN_BOX;
+
+        LayoutParams(Context context, AttributeSet attrs) {
+            super(context, attrs);
+        }
+
+        LayoutParams(int width, int height) {
+            super(width, height);
+        }
+
+        LayoutParams(MarginLayoutParams source) {
+            super(source);
+        }
+
+        LayoutParams(ViewGroup.LayoutParams source) {
+            super(source);
+        }
+    }
+}
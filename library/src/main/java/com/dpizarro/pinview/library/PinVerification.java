@@ -0,0 +1,355 @@
+package com.dpizarro.pinview.library;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * Runs a {@link PinVerifier} on its executor and delivers the result on the main thread.
+ *
+ * Each verification has a generation: changing the PIN cancels the running task and increases the generation, so a
+ * result which arrives afterwards is dropped.
+ *
+ * With a speculative budget, when only one numeric PinBox is empty every digit it could get is verified in advance,
+ * with at most that number of verifications running at once. When the PIN is completed with one of them, its result
+ * is delivered as soon as it's ready. Speculative results are dropped when any other PinBox changes, but a dropped
+ * verification keeps its place in the budget until its executor has really finished it.
+ *
+ * Methods must be called from the main thread.
+ *
+ * @param <T> result of a valid PIN
+ */
+final class PinVerification<T> {
+
+    private static final int CANDIDATES = 10;
+
+    private final PinVerifier<T> mVerifier;
+    private final Executor mExecutor;
+    private final PinVerifier.Callback<T> mCallback;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private int mGeneration;
+    private FutureTask<T> mTask;
+
+    private int mSpeculativeBudget;
+    private int mSpeculationGeneration;
+    private char[] mTemplate;
+    private int mPosition;
+    private final List<Candidate> mCandidates = new ArrayList<Candidate>(CANDIDATES);
+    private final ArrayDeque<Candidate> mQueue = new ArrayDeque<Candidate>();
+    private int mRunning;
+    private int mAwaiting = -1;
+    private int mAwaitingGeneration;
+
+    PinVerification(PinVerifier<T> verifier, Executor executor, PinVerifier.Callback<T> callback) {
+        mVerifier = verifier;
+        mExecutor = executor;
+        mCallback = callback;
+    }
+
+    /**
+     * @param speculativeBudget maximum number of speculative verifications running at once, 0 to disable them
+     */
+    void setSpeculativeBudget(int speculativeBudget) {
+        mSpeculativeBudget = Math.max(speculativeBudget, 0);
+        if (mSpeculativeBudget == 0) {
+            cancelSpeculation();
+        }
+    }
+
+    int getSpeculativeBudget() {
+        return mSpeculativeBudget;
+    }
+
+    /**
+     * Cancel the current verification and verify a new PIN, using the speculative result if there is one
+     *
+     * @param pin PIN to verify, it is wiped at once: the verification works on its own copy, wiped by the executor
+     *            once {@link PinVerifier#verify(char[])} has returned or the verification has been skipped
+     */
+    void start(char[] pin) {
+        cancel();
+        final int generation = mGeneration;
+        if (isSpeculating(pin)) {
+            int candidate = pin[mPosition] - '0';
+            if (candidate >= 0 && candidate < CANDIDATES) {
+                Arrays.fill(pin, '\0');
+                mAwaiting = candidate;
+                mAwaitingGeneration = generation;
+                Candidate speculation = mCandidates.get(candidate);
+                if (speculation.mDone) {
+                    deliverCandidate(speculation);
+                } else if (mQueue.remove(speculation)) {
+                    run(speculation);
+                }
+                return;
+            }
+        }
+
+        final char[] copy = Arrays.copyOf(pin, pin.length);
+        Arrays.fill(pin, '\0');
+        mTask = new FutureTask<T>(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                return mVerifier.verify(copy);
+            }
+        }) {
+            @Override
+            public void run() {
+                //Wiped on the executor, after verify() has returned: a cancelled task may still be reading it
+                try {
+                    super.run();
+                } finally {
+                    Arrays.fill(copy, '\0');
+                }
+            }
+
+            @Override
+            protected void done() {
+                if (isCancelled()) {
+                    return;
+                }
+                try {
+                    deliver(generation, get(), null);
+                } catch (ExecutionException e) {
+                    deliver(generation, null, toException(e));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (CancellationException e) {
+                    //Dropped, the PIN has changed
+                }
+            }
+        };
+        mExecutor.execute(mTask);
+    }
+
+    /**
+     * Cancel the current verification, its result won't be delivered. Speculative verifications are kept.
+     */
+    void cancel() {
+        mGeneration++;
+        mAwaiting = -1;
+        if (mTask != null) {
+            mTask.cancel(true);
+            mTask = null;
+        }
+    }
+
+    /**
+     * Check if speculative results can be used for a PIN
+     *
+     * @param pin current PIN, as copied by {@link PinBuffer#getPin(char[], int)}
+     * @return true if the PIN only differs from the speculated one in the speculated PinBox
+     */
+    boolean isSpeculating(char[] pin) {
+        if (mTemplate == null || mTemplate.length != pin.length) {
+            return false;
+        }
+        for (int i = 0; i < pin.length; i++) {
+            if (i != mPosition && pin[i] != mTemplate[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Verify in advance every digit of an empty PinBox, within the speculative budget.
+     *
+     * @param pin current PIN, with only one empty PinBox of one character. It isn't kept.
+     * @param position position of the empty PinBox
+     */
+    void speculate(char[] pin, int position) {
+        cancelSpeculation();
+        if (mSpeculativeBudget == 0) {
+            return;
+        }
+        mTemplate = Arrays.copyOf(pin, pin.length);
+        mPosition = position;
+        for (int i = 0; i < CANDIDATES; i++) {
+            char[] candidate = Arrays.copyOf(pin, pin.length);
+            candidate[position] = (char) ('0' + i);
+            Candidate speculation = new Candidate(mSpeculationGeneration, i, candidate);
+            mCandidates.add(speculation);
+            mQueue.add(speculation);
+        }
+        while (mRunning < mSpeculativeBudget && !mQueue.isEmpty()) {
+            run(mQueue.poll());
+        }
+    }
+
+    /**
+     * Drop every speculative verification and its results
+     */
+    void cancelSpeculation() {
+        mSpeculationGeneration++;
+        //Queued candidates never reach the executor, the others are wiped by it once they have run
+        for (Candidate candidate : mQueue) {
+            candidate.wipe();
+        }
+        mQueue.clear();
+        for (Candidate candidate : mCandidates) {
+            candidate.cancel(true);
+        }
+        mCandidates.clear();
+        if (mTemplate != null) {
+            Arrays.fill(mTemplate, '\0');
+            mTemplate = null;
+        }
+    }
+
+    private void run(Candidate candidate) {
+        mRunning++;
+        mExecutor.execute(candidate);
+    }
+
+    /**
+     * Called on the main thread when a speculative verification has a result
+     */
+    private void onCandidateDone(Candidate candidate) {
+        if (candidate.mGeneration != mSpeculationGeneration) {
+            return;
+        }
+        if (mAwaiting == candidate.mCandidate && mAwaitingGeneration == mGeneration) {
+            deliverCandidate(candidate);
+        }
+    }
+
+    /**
+     * Called on the main thread once the executor has finished a speculative verification, even if it was cancelled,
+     * to free its place in the budget
+     */
+    private void onCandidateFinished() {
+        mRunning--;
+        while (mRunning < mSpeculativeBudget && !mQueue.isEmpty()) {
+            run(mQueue.poll());
+        }
+    }
+
+    private void deliverCandidate(Candidate candidate) {
+        mAwaiting = -1;
+        deliver(mGeneration, candidate.mResult, candidate.mError);
+    }
+
+    private void deliver(final int generation, final T result, final Exception error) {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (generation != mGeneration) {
+                    return;
+                }
+                mTask = null;
+                if (error != null) {
+                    mCallback.onError(error);
+                } else if (result == null) {
+                    mCallback.onRejected();
+                } else {
+                    mCallback.onVerified(result);
+                }
+            }
+        });
+    }
+
+    private static Exception toException(ExecutionException e) {
+        Throwable cause = e.getCause();
+        return cause instanceof Exception ? (Exception) cause : new Exception(cause);
+    }
+
+    /**
+     * Speculative verification of one digit, its result is kept until the speculation is dropped
+     */
+    private final class Candidate extends FutureTask<T> {
+
+        final int mGeneration;
+        final int mCandidate;
+        private final char[] mPin;
+        boolean mDone;
+        T mResult;
+        Exception mError;
+        private final Runnable mFinished = new Runnable() {
+            @Override
+            public void run() {
+                onCandidateFinished();
+            }
+        };
+
+        Candidate(int generation, int candidate, final char[] pin) {
+            super(new Callable<T>() {
+                @Override
+                public T call() throws Exception {
+                    return mVerifier.verify(pin);
+                }
+            });
+            mGeneration = generation;
+            mCandidate = candidate;
+            mPin = pin;
+        }
+
+        void wipe() {
+            Arrays.fill(mPin, '\0');
+        }
+
+        @Override
+        public void run() {
+            try {
+                super.run();
+            } finally {
+                wipe();
+                mHandler.post(mFinished);
+            }
+        }
+
+        @Override
+        protected void done() {
+            if (isCancelled()) {
+                return;
+            }
+            T result = null;
+            Exception error = null;
+            try {
+                result = get();
+            } catch (ExecutionException e) {
+                error = toException(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (CancellationException e) {
+                return;
+            }
+            final T finalResult = result;
+            final Exception finalError = error;
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    mResult = finalResult;
+                    mError = finalError;
+                    mDone = true;
+                    onCandidateDone(Candidate.this);
+                }
+            });
+        }
+    }
+}
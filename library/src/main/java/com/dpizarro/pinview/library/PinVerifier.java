@@ -0,0 +1,77 @@
+package com.dpizarro.pinview.library;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * Check of a completed PIN, run by {@link PinView} on a background executor. See
+ * {@link PinView#setPinVerifier(PinVerifier, java.util.concurrent.Executor, Callback)}.
+ *
+ * Example:
+ *
+ *      pinView.setPinVerifier(new PinVerifier<Session>() {
+ *
+ *          public Session verify(char[] pin) throws Exception {
+ *              //Derive the key and compare it in constant time
+ *              return matches ? session : null;
+ *          }
+ *      }, executor, new PinVerifier.Callback<Session>() {
+ *
+ *          public void onVerified(Session session) {
+ *          }
+ *
+ *          public void onRejected() {
+ *          }
+ *
+ *          public void onError(Exception e) {
+ *          }
+ *      });
+ *
+ * @param <T> result of a valid PIN
+ */
+public interface PinVerifier<T> {
+
+    /**
+     * Check a PIN. It runs on a background thread and it can be interrupted if the PIN is changed meanwhile.
+     *
+     * @param pin completed PIN, it is wiped when this method returns
+     * @return result of a valid PIN or null if the PIN is not valid
+     * @throws Exception if the PIN can't be checked
+     */
+    T verify(char[] pin) throws Exception;
+
+    /**
+     * Result of a {@link PinVerifier}, called on the main thread only if the PIN hasn't changed since it was checked.
+     *
+     * @param <T> result of a valid PIN
+     */
+    interface Callback<T> {
+
+        /**
+         * @param result result of {@link PinVerifier#verify(char[])}
+         */
+        void onVerified(T result);
+
+        /**
+         * The PIN is not valid
+         */
+        void onRejected();
+
+        /**
+         * @param e error thrown by {@link PinVerifier#verify(char[])}
+         */
+        void onError(Exception e);
+    }
+}
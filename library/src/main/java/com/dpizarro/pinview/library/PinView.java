@@ -1,16 +1,22 @@
 package com.dpizarro.pinview.library;
 
 import android.content.Context;
-import android.content.res.Resources;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.os.Parcelable;
+import android.support.v4.view.ViewCompat;
 import android.text.InputType;
+import android.text.TextUtils;
 import android.util.AttributeSet;
-import android.view.Gravity;
+import android.util.Log;
 import android.view.View;
 import android.widget.EditText;
 import android.widget.TextView;
 
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+
 /*
  * Copyright (C) 2015 David Pizarro
  *
@@ -44,8 +50,22 @@ import android.widget.TextView;
  */
 public class PinView extends PinViewBaseHelper {
 
+    private static final String LOG_TAG = PinView.class.getSimpleName();
+
     private PinViewSettings mPinViewSettings;
     private OnCompleteListener onCompleteListener = null;
+    private boolean mChildrenReleased;
+    private OtpSource mOtpSource;
+    private Executor mOnCompleteExecutor;
+    private PinVerification<?> mPinVerification;
+    private int mSpeculativeBudget;
+    private char[] mSpeculationPin = new char[0];
+    private char[] mOtpCode = new char[0];
+    private boolean mHasPendingComplete;
+    private boolean mPendingCompleted;
+    private String mPendingPinResults;
+    private boolean mCompleteDispatchPosted;
+    private final OtpDispatcher mOtpDispatcher = new OtpDispatcher();
 
 
     /**
@@ -60,18 +80,46 @@ public class PinView extends PinViewBaseHelper {
 
     /**
      * Set titles (see {@link TextView}) values to add to {@link PinView}, with all attributes.
+     * Current titles are reused, only the difference is added or removed.
      *
      * @param titles string array with the titles values
      */
     @Override
     public void setTitles(String[] titles) {
+        long start = PinViewMetrics.start();
+        updateTitles(titles);
+        PinViewMetrics.record(PinViewMetrics.SET_TITLES, start);
+    }
+
+    private void updateTitles(String[] titles) {
         if(titles!=null){
-            mLinearLayoutPinTexts.removeAllViews();
             mPinTitles = titles;
-            pinTitlesIds = new int[titles.length];
+            mSettingsChanged = true;
+            updateRenderMode();
+            if (mCanvasMode) {
+                mPinCanvasView.refreshStyles();
+                return;
+            }
+
+            int previous = pinTitles != null ? pinTitles.length : 0;
+            TextView[] newPinTitles = previous == titles.length ? pinTitles : new TextView[titles.length];
             for (int i = 0; i < titles.length; i++) {
-                mLinearLayoutPinTexts.addView(generatePinText(i, titles), i);
+                if (i < previous) {
+                    TextView pinTitle = pinTitles[i];
+                    if (!TextUtils.equals(pinTitle.getText(), titles[i])) {
+                        pinTitle.setText(titles[i]);
+                    }
+                    newPinTitles[i] = pinTitle;
+                } else {
+                    newPinTitles[i] = generatePinText(i, titles);
+                    mPinLayout.addTitle(newPinTitles[i], i);
+                }
+            }
+            for (int i = titles.length; i < previous; i++) {
+                mPinLayout.removeView(pinTitles[i]);
+                PinViewPool.recycleTitle(pinTitles[i]);
             }
+            pinTitles = newPinTitles;
         }
     }
 
@@ -87,57 +135,224 @@ public class PinView extends PinViewBaseHelper {
 
     /**
      * Set PinBoxes (see {@link EditText}) number to add to {@link PinView}, with all attributes, including splits.
+     * Current PinBoxes and splits are reused with their values, only the difference is added or removed.
      *
      * @param numberPinBoxes number of PinBoxes
      * @param inputType input type of each PinBox (see {@link InputType})
      */
     public void setPin(int numberPinBoxes, int inputType) {
+        long start = PinViewMetrics.start();
+        updatePin(numberPinBoxes, inputType);
+        PinViewMetrics.record(PinViewMetrics.SET_PIN, start);
+    }
+
+    private void updatePin(int numberPinBoxes, int inputType) {
         if(numberPinBoxes<=0) {
             numberPinBoxes = mNumberPinBoxes;
         }
 
-        mLinearLayoutPinBoxes.removeAllViews();
         setNumberPinBoxes(numberPinBoxes);
-        pinBoxesIds = new int[numberPinBoxes];
-        pinSplitsIds = new int[numberPinBoxes-1];
+        mPinBuffer.resize(numberPinBoxes, mNumberCharacters);
+        updateRenderMode();
+        if (mCanvasMode) {
+            mPinCanvasView.setPin(inputType);
+            return;
+        }
+
+        boolean hasSplit = mSplit != null && !mSplit.isEmpty();
+        int previous = pinBoxes != null ? pinBoxes.length : 0;
+        EditText[] newPinBoxes = previous == numberPinBoxes ? pinBoxes : new EditText[numberPinBoxes];
+        TextView[] newPinSplits = previous == numberPinBoxes ? pinSplits : new TextView[numberPinBoxes - 1];
         int index = 0;
 
         for (int i = 0; i < numberPinBoxes; i++) {
-            mLinearLayoutPinBoxes.addView(generatePinBox(i, inputType), index);
-            if (mSplit != null && !mSplit.isEmpty() && i < numberPinBoxes - 1) {
-                mLinearLayoutPinBoxes.addView(generateSplit(i), index + 1);
-                mLinearLayoutPinBoxes.setGravity(Gravity.CENTER_VERTICAL);
-                index += 2;
+            EditText pinBox;
+            if (i < previous) {
+                pinBox = pinBoxes[i];
+                if (inputType != -1 && pinBox.getInputType() != inputType) {
+                    pinBox.setInputType(inputType);
+                    setStylePinBox(pinBox);
+                }
             } else {
-                index++;
+                pinBox = generatePinBox(inputType);
+                setPinBoxIndex(pinBox, i);
+                mPinLayout.addPinBoxOrSplit(pinBox, index, PinLayout.TYPE_PIN_BOX);
+            }
+            newPinBoxes[i] = pinBox;
+            index++;
+
+            if (i < numberPinBoxes - 1) {
+                TextView split = i < previous - 1 ? pinSplits[i] : null;
+                if (hasSplit) {
+                    if (split == null) {
+                        split = generateSplit();
+                        mPinLayout.addPinBoxOrSplit(split, index, PinLayout.TYPE_SPLIT);
+                    }
+                    index++;
+                } else if (split != null) {
+                    mPinLayout.removeView(split);
+                    PinViewPool.recycleSplit(split);
+                    split = null;
+                }
+                newPinSplits[i] = split;
             }
         }
+
+        for (int i = numberPinBoxes; i < previous; i++) {
+            mPinLayout.removeView(pinBoxes[i]);
+            PinViewPool.recyclePinBox(pinBoxes[i], this);
+            if (pinSplits[i - 1] != null) {
+                mPinLayout.removeView(pinSplits[i - 1]);
+                PinViewPool.recycleSplit(pinSplits[i - 1]);
+            }
+        }
+        pinBoxes = newPinBoxes;
+        pinSplits = newPinSplits;
+        updateHiddenInput(inputType);
     }
 
     @Override
     protected void notifyPinViewCompleted() {
+        if (mPinVerification != null) {
+            char[] pin = new char[mPinBuffer.length()];
+            mPinBuffer.getPin(pin, 0);
+            mPinVerification.start(pin);
+        }
         if (onCompleteListener != null) {
             lastCompleted = true;
-            onCompleteListener.onComplete(true, getPinResults());
+            dispatchComplete(true, getPinResults());
+        }
+    }
+
+    @Override
+    protected void notifyPinViewChanged() {
+        if (mPinVerification != null) {
+            mPinVerification.cancel();
+            if (mPinVerification.getSpeculativeBudget() > 0) {
+                speculate(mPinVerification);
+            }
         }
     }
 
     /**
-     * Get {@link PinView} current value.
+     * Keep the speculative verifications while only the last empty PinBox changes, otherwise drop them and start
+     * new ones if a single numeric PinBox of one character is empty.
+     */
+    private void speculate(PinVerification<?> pinVerification) {
+        if (mSpeculationPin.length != mPinBuffer.length()) {
+            mSpeculationPin = new char[mPinBuffer.length()];
+        }
+        char[] pin = mSpeculationPin;
+        mPinBuffer.getPin(pin, 0);
+        if (!pinVerification.isSpeculating(pin)) {
+            int position = mPinBuffer.nextEmptyPinBox(0);
+            if (mNumberCharacters == 1 && position >= 0 && mPinBuffer.nextEmptyPinBox(position + 1) < 0
+                    && isNumeric(getPinInputType())) {
+                pinVerification.speculate(pin, position);
+            } else {
+                pinVerification.cancelSpeculation();
+            }
+        }
+        Arrays.fill(pin, '\0');
+    }
+
+    /**
+     * Cancel every verification, including the speculative ones
+     */
+    private void cancelVerification() {
+        if (mPinVerification != null) {
+            mPinVerification.cancel();
+            mPinVerification.cancelSpeculation();
+        }
+    }
+
+    @Override
+    protected void notifyPinViewNotCompleted() {
+        if (onCompleteListener != null && lastCompleted) {
+            lastCompleted = false;
+            if (isDeleteOnClick()) {
+                dispatchComplete(false, null);
+            } else {
+                dropPendingComplete();
+            }
+        }
+    }
+
+    /**
+     * Call {@link OnCompleteListener} right away or, with an {@link Executor}, keep only the last event until the
+     * next animation frame and call it from the executor. A completion lost in the same frame is never delivered: it
+     * is replaced by the non completion, or dropped when non completions aren't sent (see {@link #isDeleteOnClick()}).
      *
-     * @return a string with PinBoxes values
+     * @param completed  true if {@link PinView} is completed
+     * @param pinResults value taken when it was completed
      */
-    public String getPinResults() {
+    private void dispatchComplete(boolean completed, String pinResults) {
+        if (mOnCompleteExecutor == null) {
+            onCompleteListener.onComplete(completed, pinResults);
+            return;
+        }
+        mHasPendingComplete = true;
+        mPendingCompleted = completed;
+        mPendingPinResults = pinResults;
+        if (!mCompleteDispatchPosted) {
+            mCompleteDispatchPosted = true;
+            ViewCompat.postOnAnimation(this, mCompleteDispatcher);
+        }
+    }
 
-        String pinResults = "";
-        for (int i = 0; i < mNumberPinBoxes; i++) {
-            String pinBoxValue = getPinBox(i).getText().toString();
-            if (pinBoxValue.isEmpty()) {
-                pinBoxValue = " ";
+    /**
+     * Drop a completion which hasn't been delivered yet, when it's lost without a non completion event.
+     * The posted dispatch is kept, it has nothing to deliver anymore.
+     */
+    private void dropPendingComplete() {
+        if (mHasPendingComplete && mPendingCompleted) {
+            mHasPendingComplete = false;
+            mPendingPinResults = null;
+        }
+    }
+
+    private final Runnable mCompleteDispatcher = new Runnable() {
+        @Override
+        public void run() {
+            mCompleteDispatchPosted = false;
+            if (!mHasPendingComplete) {
+                return;
             }
-            pinResults += pinBoxValue;
+            mHasPendingComplete = false;
+            final OnCompleteListener listener = onCompleteListener;
+            final boolean completed = mPendingCompleted;
+            final String pinResults = mPendingPinResults;
+            mPendingPinResults = null;
+            if (listener == null || mOnCompleteExecutor == null) {
+                return;
+            }
+            mOnCompleteExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    listener.onComplete(completed, pinResults);
+                }
+            });
         }
-        return pinResults;
+    };
+
+    /**
+     * Get {@link PinView} current value. An empty PinBox is returned as a space.
+     * See {@link #getPinBuffer()} to get it without creating a String.
+     *
+     * @return a string with PinBoxes values
+     */
+    public String getPinResults() {
+        return mPinBuffer.toPinResults();
+    }
+
+    /**
+     * Get {@link PinView} current value, to copy it into a char array or a {@link java.nio.CharBuffer} without
+     * creating a String, and to wipe it.
+     *
+     * @return buffer with PinBoxes values, owned by this {@link PinView}
+     */
+    public PinBuffer getPinBuffer() {
+        return mPinBuffer;
     }
 
 
@@ -153,50 +368,128 @@ public class PinView extends PinViewBaseHelper {
             getOnFocusChangeListener().onFocusChange(v, hasFocus);
         }
 
+        if (v == mHiddenInput) {
+            if (hasFocus) {
+                setImeVisibility(true);
+            }
+            return;
+        }
+
+        if (hasFocus) {
+            setCurrentFocus(v);
+        }
+
         EditText et = (EditText) v;
-        if (et.getText().toString().length() >= 1 && hasFocus && isDeleteOnClick()) {
+        if (et.getText().length() >= 1 && hasFocus && isDeleteOnClick()) {
             et.getText().clear();
         }
 
         if (hasFocus) {
             setImeVisibility(true);
-
-            if (onCompleteListener != null && lastCompleted) {
-                lastCompleted = false;
-                if (isDeleteOnClick()) {
-                    onCompleteListener.onComplete(false, null);
-                }
-            }
+            notifyPinViewNotCompleted();
         }
     }
 
     /**
-     * Clear PinBoxes values
+     * Clear PinBoxes values and wipe {@link PinBuffer}
      */
     public void clear() {
+        if (mCanvasMode) {
+            if (mPinCanvasView != null) {
+                mPinCanvasView.clear();
+            }
+            return;
+        }
 
-        for (int i = 0; i < mNumberPinBoxes; i++) {
-            getPinBox(i).getText().clear();
+        setPinBoxes(null, 0);
+        mPinBuffer.wipe();
+        if (mHiddenInput != null) {
+            mHiddenInput.requestFocus();
         }
-        checkPinBoxesAvailableOrder();
+    }
+
+    /**
+     * Set the value of every PinBox at once, filling each PinBox before the next one.
+     * Characters which aren't accepted by the input type of the PinBoxes are skipped. The first empty PinBox gets the
+     * focus or, if every PinBox is filled, {@link OnCompleteListener} is called once.
+     *
+     * @param pin new PIN
+     */
+    public void setPin(CharSequence pin) {
+        setPinBoxes(pin, 0);
     }
 
     /**
      * Clear PinBoxes focus
      */
     public void resetChildrenFocus() {
-        for (int pinBoxesId : pinBoxesIds) {
-            EditText pin = (EditText) findViewById(pinBoxesId);
+        for (EditText pin : pinBoxes) {
             pin.setOnFocusChangeListener(this);
         }
     }
 
+    public boolean isCanvasMode() {
+        return mCanvasMode;
+    }
+
+    /**
+     * Draw every PinBox, split and title in a single view instead of one {@link EditText} per PinBox and one
+     * {@link TextView} per split and title. Current values are cleared.
+     *
+     * @param canvasMode true to draw {@link PinView} in a single view
+     */
+    public void setCanvasMode(boolean canvasMode) {
+        setCanvasMode(canvasMode, true);
+    }
+
+    private void setCanvasMode(boolean canvasMode, boolean refresh) {
+        if (this.mCanvasMode != canvasMode) {
+            this.mCanvasMode = canvasMode;
+            mSettingsChanged = true;
+            if (refresh) {
+                setTitles(mPinTitles);
+                setPin(mNumberPinBoxes);
+            }
+        }
+    }
+
+    public boolean isSingleInput() {
+        return mSingleInput;
+    }
+
+    /**
+     * Use a single hidden input which owns the keyboard, instead of moving the focus from PinBox to PinBox.
+     * PinBoxes only show its value, so a whole PIN is typed in a single IME session. Current values are cleared.
+     * It has no effect with {@link #setCanvasMode(boolean)}, which already uses a single view.
+     *
+     * @param singleInput true to type every PinBox through a single input
+     */
+    public void setSingleInput(boolean singleInput) {
+        setSingleInput(singleInput, true);
+    }
+
+    private void setSingleInput(boolean singleInput, boolean refresh) {
+        if (this.mSingleInput != singleInput) {
+            this.mSingleInput = singleInput;
+            mSettingsChanged = true;
+            releaseChildren();
+            mPinBuffer.wipe();
+            if (refresh) {
+                setTitles(mPinTitles);
+                setPin(mNumberPinBoxes);
+            }
+        }
+    }
+
     public boolean isKeyboardMandatory() {
         return mKeyboardMandatory;
     }
 
     public void setKeyboardMandatory(boolean keyboardMandatory) {
-        this.mKeyboardMandatory = keyboardMandatory;
+        if (mKeyboardMandatory != keyboardMandatory) {
+            this.mKeyboardMandatory = keyboardMandatory;
+            mSettingsChanged = true;
+        }
     }
 
     public boolean isMaskPassword() {
@@ -208,7 +501,10 @@ public class PinView extends PinViewBaseHelper {
     }
 
     private void setMaskPassword(boolean maskPassword, boolean refresh) {
-        this.mMaskPassword = maskPassword;
+        if (mMaskPassword != maskPassword) {
+            this.mMaskPassword = maskPassword;
+            markStylesDirty(STYLE_PIN_BOX_TRANSFORMATION);
+        }
         if (refresh) {
             setStylesPinBoxes();
         }
@@ -219,7 +515,10 @@ public class PinView extends PinViewBaseHelper {
     }
 
     public void setDeleteOnClick(boolean deleteOnClick) {
-        this.mDeleteOnClick = deleteOnClick;
+        if (mDeleteOnClick != deleteOnClick) {
+            this.mDeleteOnClick = deleteOnClick;
+            mSettingsChanged = true;
+        }
     }
 
     public boolean isNativePinBox() {
@@ -231,7 +530,10 @@ public class PinView extends PinViewBaseHelper {
     }
 
     private void setNativePinBox(boolean nativePinBox, boolean refresh) {
-        this.mNativePinBox = nativePinBox;
+        if (mNativePinBox != nativePinBox) {
+            this.mNativePinBox = nativePinBox;
+            markStylesDirty(STYLE_PIN_BOX_BACKGROUND);
+        }
         if (refresh) {
             setStylesPinBoxes();
         }
@@ -243,7 +545,10 @@ public class PinView extends PinViewBaseHelper {
 
     private void setCustomDrawablePinBox(int customDrawablePinBox, boolean refresh) {
         if (customDrawablePinBox != 0) {
-            this.mCustomDrawablePinBox = customDrawablePinBox;
+            if (mCustomDrawablePinBox != customDrawablePinBox) {
+                this.mCustomDrawablePinBox = customDrawablePinBox;
+                markStylesDirty(STYLE_PIN_BOX_BACKGROUND);
+            }
             if (refresh) {
                 setStylesPinBoxes();
             }
@@ -254,13 +559,23 @@ public class PinView extends PinViewBaseHelper {
         return mNumberCharacters;
     }
 
+    /**
+     * Set the number of characters of each PinBox. Characters which don't fit anymore are removed from the PinBoxes
+     * and the hidden input once the new filters are set.
+     *
+     * @param numberCharacters number of characters of each PinBox
+     */
     public void setNumberCharacters(int numberCharacters) {
         setNumberCharacters(numberCharacters, true);
     }
 
     private void setNumberCharacters(int numberCharacters, boolean refresh) {
         if (numberCharacters > 0) {
-            this.mNumberCharacters = numberCharacters;
+            if (mNumberCharacters != numberCharacters) {
+                this.mNumberCharacters = numberCharacters;
+                mPinBuffer.resize(mNumberPinBoxes, numberCharacters);
+                markStylesDirty(STYLE_PIN_BOX_FILTERS);
+            }
             if (refresh) {
                 setStylesPinBoxes();
             }
@@ -277,7 +592,10 @@ public class PinView extends PinViewBaseHelper {
 
     private void setSplit(String split, boolean refresh) {
         if (split != null && !split.isEmpty()) {
-            this.mSplit = split;
+            if (!split.equals(mSplit)) {
+                this.mSplit = split;
+                markStylesDirty(STYLE_SPLIT_TEXT);
+            }
             if (refresh) {
                 setStylesSplits();
             }
@@ -294,7 +612,10 @@ public class PinView extends PinViewBaseHelper {
 
     private void setSizeSplit(float sizeSplit, boolean refresh) {
         if (sizeSplit != 0) {
-            mSizeSplit = sizeSplit;
+            if (mSizeSplit != sizeSplit) {
+                mSizeSplit = sizeSplit;
+                markStylesDirty(STYLE_SPLIT_TEXT_SIZE);
+            }
             if (refresh) {
                 setStylesSplits();
             }
@@ -311,7 +632,10 @@ public class PinView extends PinViewBaseHelper {
 
     private void setTextSizePinBoxes(float textSizePinBoxes, boolean refresh) {
         if (textSizePinBoxes != 0) {
-            mTextSizePinBoxes = textSizePinBoxes;
+            if (mTextSizePinBoxes != textSizePinBoxes) {
+                mTextSizePinBoxes = textSizePinBoxes;
+                markStylesDirty(STYLE_PIN_BOX_TEXT_SIZE);
+            }
             if (refresh) {
                 setStylesPinBoxes();
             }
@@ -328,7 +652,10 @@ public class PinView extends PinViewBaseHelper {
 
     private void setTextSizeTitles(float textSizeTitles, boolean refresh) {
         if (textSizeTitles != 0) {
-            mTextSizeTitles = textSizeTitles;
+            if (mTextSizeTitles != textSizeTitles) {
+                mTextSizeTitles = textSizeTitles;
+                markStylesDirty(STYLE_TITLE_TEXT_SIZE);
+            }
             if (refresh) {
                 setStylePinTitles();
             }
@@ -344,8 +671,9 @@ public class PinView extends PinViewBaseHelper {
     }
 
     private void setNumberPinBoxes(int numberPinBoxes) {
-        if (numberPinBoxes > 0) {
+        if (numberPinBoxes > 0 && mNumberPinBoxes != numberPinBoxes) {
             this.mNumberPinBoxes = numberPinBoxes;
+            mSettingsChanged = true;
         }
     }
 
@@ -360,13 +688,11 @@ public class PinView extends PinViewBaseHelper {
 
     private void setColorTextPinBoxes(int color, boolean refresh) {
         if (color != 0) {
-            int newColor;
-            try {
-                newColor = getResources().getColor(color);
-            } catch (Resources.NotFoundException e) {
-                newColor = color;
+            int newColor = PinViewStyleCache.resolveColor(getResources(), color);
+            if (mColorTextPinBoxes != newColor) {
+                mColorTextPinBoxes = newColor;
+                markStylesDirty(STYLE_PIN_BOX_TEXT_COLOR);
             }
-            mColorTextPinBoxes = newColor;
             if (refresh) {
                 setStylesPinBoxes();
             }
@@ -384,13 +710,11 @@ public class PinView extends PinViewBaseHelper {
 
     private void setColorTitles(int color, boolean refresh) {
         if (color != 0) {
-            int newColor;
-            try {
-                newColor = getResources().getColor(color);
-            } catch (Resources.NotFoundException e) {
-                newColor = color;
+            int newColor = PinViewStyleCache.resolveColor(getResources(), color);
+            if (mColorTextTitles != newColor) {
+                mColorTextTitles = newColor;
+                markStylesDirty(STYLE_TITLE_TEXT_COLOR);
             }
-            mColorTextTitles = newColor;
             if (refresh) {
                 setStylePinTitles();
             }
@@ -408,13 +732,11 @@ public class PinView extends PinViewBaseHelper {
 
     private void setColorSplit(int color, boolean refresh) {
         if (color != 0) {
-            int newColor;
-            try {
-                newColor = getResources().getColor(color);
-            } catch (Resources.NotFoundException e) {
-                newColor = color;
+            int newColor = PinViewStyleCache.resolveColor(getResources(), color);
+            if (mColorSplit != newColor) {
+                mColorSplit = newColor;
+                markStylesDirty(STYLE_SPLIT_TEXT_COLOR);
             }
-            mColorSplit = newColor;
             if (refresh) {
                 setStylesSplits();
             }
@@ -424,27 +746,130 @@ public class PinView extends PinViewBaseHelper {
 
     /**
      * This method sets the desired functionalities of {@link PinView} to make easy.
+     * Only the attributes which differ from the current ones are changed.
      *
      * @param pinViewSettings Object with all functionalities to make easy.
      */
     public void setSettings(PinViewSettings pinViewSettings) {
-        mPinViewSettings = pinViewSettings;
-        setColorTextPinBoxes(mPinViewSettings.getColorTextPinBox(), false);
-        setColorTitles(mPinViewSettings.getColorTextTitles(), false);
-        setCustomDrawablePinBox(mPinViewSettings.getCustomDrawablePinBox(), false);
-        setColorSplit(mPinViewSettings.getColorSplit(), false);
-        setDeleteOnClick(mPinViewSettings.isDeleteOnClick());
-        setNativePinBox(mPinViewSettings.isNativePinBox(), false);
-        setMaskPassword(mPinViewSettings.isMaskPassword(), false);
-        setKeyboardMandatory(mPinViewSettings.isKeyboardMandatory());
-        setNumberCharacters(mPinViewSettings.getNumberCharacters(), false);
-        setSplit(mPinViewSettings.getSplit(), false);
-        setSizeSplit(mPinViewSettings.getSizeSplit(), false);
-        setTextSizePinBoxes(mPinViewSettings.getTextSizePinBox(), false);
-        setTextSizeTitles(mPinViewSettings.getTextSizeTitles(), false);
-
-        setTitles(mPinViewSettings.getPinTitles());
-        setPin(mPinViewSettings.getNumberPinBoxes());
+        long start = PinViewMetrics.start();
+        updateSettings(pinViewSettings);
+        PinViewMetrics.record(PinViewMetrics.SET_SETTINGS, start);
+    }
+
+    /**
+     * Apply only the fields which differ from the current attributes. Settings are interned, so the same instance as
+     * the current snapshot means there is nothing to change.
+     */
+    private void updateSettings(PinViewSettings pinViewSettings) {
+        saveSettings();
+        if (pinViewSettings == mPinViewSettings) {
+            return;
+        }
+        int fields = mPinViewSettings.diff(pinViewSettings);
+        if (fields != 0) {
+            mSettingsChanged = true;
+            applySettings(pinViewSettings, fields);
+        }
+    }
+
+    /**
+     * Apply some fields of the settings. Titles are rebuilt only if they or the rendering have changed, and PinBoxes
+     * and splits only if their number, the split or the rendering have changed.
+     *
+     * @param settings settings to apply
+     * @param fields fields to apply, see {@link PinViewSettings#diff(PinViewSettings)}
+     */
+    private void applySettings(PinViewSettings settings, int fields) {
+        if ((fields & PinViewSettings.FIELD_COLOR_TEXT_PIN_BOX) != 0) {
+            setColorTextPinBoxes(settings.getColorTextPinBox(), false);
+        }
+        if ((fields & PinViewSettings.FIELD_COLOR_TEXT_TITLES) != 0) {
+            setColorTitles(settings.getColorTextTitles(), false);
+        }
+        if ((fields & PinViewSettings.FIELD_CUSTOM_PIN_BOX) != 0) {
+            setCustomDrawablePinBox(settings.getCustomDrawablePinBox(), false);
+        }
+        if ((fields & PinViewSettings.FIELD_COLOR_SPLIT) != 0) {
+            setColorSplit(settings.getColorSplit(), false);
+        }
+        if ((fields & PinViewSettings.FIELD_DELETE_ON_CLICK) != 0) {
+            setDeleteOnClick(settings.isDeleteOnClick());
+        }
+        if ((fields & PinViewSettings.FIELD_NATIVE_PIN_BOX) != 0) {
+            setNativePinBox(settings.isNativePinBox(), false);
+        }
+        if ((fields & PinViewSettings.FIELD_CANVAS_MODE) != 0) {
+            setCanvasMode(settings.isCanvasMode(), false);
+        }
+        if ((fields & PinViewSettings.FIELD_SINGLE_INPUT) != 0) {
+            setSingleInput(settings.isSingleInput(), false);
+        }
+        if ((fields & PinViewSettings.FIELD_MASK_PASSWORD) != 0) {
+            setMaskPassword(settings.isMaskPassword(), false);
+        }
+        if ((fields & PinViewSettings.FIELD_KEYBOARD_MANDATORY) != 0) {
+            setKeyboardMandatory(settings.isKeyboardMandatory());
+        }
+        if ((fields & PinViewSettings.FIELD_NUMBER_CHARACTERS) != 0) {
+            setNumberCharacters(settings.getNumberCharacters(), false);
+        }
+        if ((fields & PinViewSettings.FIELD_SPLIT) != 0) {
+            setSplit(settings.getSplit(), false);
+        }
+        if ((fields & PinViewSettings.FIELD_SIZE_SPLIT) != 0) {
+            setSizeSplit(settings.getSizeSplit(), false);
+        }
+        if ((fields & PinViewSettings.FIELD_TEXT_SIZE_PIN_BOX) != 0) {
+            setTextSizePinBoxes(settings.getTextSizePinBox(), false);
+        }
+        if ((fields & PinViewSettings.FIELD_TEXT_SIZE_TITLES) != 0) {
+            setTextSizeTitles(settings.getTextSizeTitles(), false);
+        }
+
+        int rendering = PinViewSettings.FIELD_CANVAS_MODE | PinViewSettings.FIELD_SINGLE_INPUT;
+        if ((fields & (PinViewSettings.FIELD_PIN_TITLES | rendering)) != 0) {
+            setTitles(settings.getPinTitles());
+        }
+        if ((fields & (PinViewSettings.FIELD_NUMBER_PIN_BOXES | PinViewSettings.FIELD_SPLIT | rendering)) != 0) {
+            setPin(settings.getNumberPinBoxes());
+        }
+        refreshStyles(REFRESH_PIN_BOXES | REFRESH_TITLES | REFRESH_SPLITS);
+    }
+
+    /**
+     * Rebuild the children returned to {@link PinViewPool} when {@link PinView} was detached.
+     */
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        if (mChildrenReleased) {
+            mChildrenReleased = false;
+            char[] state = new char[mPinBuffer.stateLength()];
+            mPinBuffer.saveState(state);
+            setTitles(mPinTitles);
+            setPin(mNumberPinBoxes);
+            restorePinBoxes(state);
+            Arrays.fill(state, '\0');
+        }
+        if (mOtpSource != null) {
+            mOtpSource.start(mOtpDispatcher);
+        }
+    }
+
+    /**
+     * Return PinBoxes, splits and titles to {@link PinViewPool}, if it's enabled, keeping the current value.
+     */
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        if (mOtpSource != null) {
+            mOtpSource.stop();
+        }
+        cancelVerification();
+        if (PinViewPool.isEnabled() && !mCanvasMode && pinBoxes != null && pinBoxes.length > 0) {
+            mChildrenReleased = true;
+            releaseChildren();
+        }
     }
 
     /**
@@ -452,20 +877,27 @@ public class PinView extends PinViewBaseHelper {
      */
     @Override
     public Parcelable onSaveInstanceState() {
-
+        long start = PinViewMetrics.start();
         Bundle bundle = new Bundle();
         bundle.putParcelable("instanceState", super.onSaveInstanceState());
         saveSettings();
         bundle.putParcelable("stateSettings", mPinViewSettings);
         //save everything
-        bundle.putString("statePinResults", getPinResults());
+        char[] state = new char[mPinBuffer.stateLength()];
+        mPinBuffer.saveState(state);
+        bundle.putCharArray("statePinBoxes", state);
+        PinViewMetrics.record(PinViewMetrics.SAVE_STATE, start);
         return bundle;
     }
 
     /**
-     * Save current attributes in {@link PinView#mPinViewSettings}
+     * Save current attributes in {@link PinView#mPinViewSettings}, only if any of them has changed since the last time
      */
     private void saveSettings() {
+        if (mPinViewSettings != null && !mSettingsChanged) {
+            return;
+        }
+        mSettingsChanged = false;
         mPinViewSettings = new PinViewSettings.Builder()
                 .withColorSplit(mColorSplit)
                 .withColorTextPinBox(mColorTextPinBoxes)
@@ -473,6 +905,8 @@ public class PinView extends PinViewBaseHelper {
                 .withCustomDrawablePinBox(mCustomDrawablePinBox)
                 .withDeleteOnClick(isDeleteOnClick())
                 .withNativePinBox(isNativePinBox())
+                .withCanvasMode(isCanvasMode())
+                .withSingleInput(isSingleInput())
                 .withSplit(getSplit())
                 .withMaskPassword(isMaskPassword())
                 .withKeyboardMandatory(isKeyboardMandatory())
@@ -490,19 +924,40 @@ public class PinView extends PinViewBaseHelper {
      */
     @Override
     public void onRestoreInstanceState(Parcelable state) {
-
+        long start = PinViewMetrics.start();
         if (state instanceof Bundle) {
             Bundle bundle = (Bundle) state;
             //load everything
             PinViewSettings pinViewSettings = bundle.getParcelable("stateSettings");
             if (pinViewSettings != null) {
-                setSettings(pinViewSettings);
+                //Usually the restored settings are the ones already set from XML: only the differences are applied
+                updateSettings(pinViewSettings);
+            }
+            char[] pinBoxes = bundle.getCharArray("statePinBoxes");
+            if (pinBoxes != null) {
+                restorePinBoxes(pinBoxes);
             }
-            String pinResults = bundle.getString("statePinResults");
-            setPinResults(pinResults);
             state = bundle.getParcelable("instanceState");
         }
         super.onRestoreInstanceState(state);
+        PinViewMetrics.record(PinViewMetrics.RESTORE_STATE, start);
+    }
+
+    /**
+     * Start a batch of changes, applied to PinBoxes, titles and splits all at once with {@link Editor#apply()}.
+     *
+     * Example:
+     *
+     *      pinView.edit()
+     *              .setMaskPassword(false)
+     *              .setTextSizePinBoxes(size)
+     *              .setColorTextPinBoxes(Color.BLACK)
+     *              .apply();
+     *
+     * @return a new {@link Editor} for this {@link PinView}
+     */
+    public Editor edit() {
+        return new Editor();
     }
 
     /**
@@ -514,6 +969,365 @@ public class PinView extends PinViewBaseHelper {
         onCompleteListener = listener;
     }
 
+    /**
+     * Set an {@link Executor} to call {@link OnCompleteListener}, so heavy work (checking or storing the PIN) doesn't
+     * delay the frame which draws the last character. Events are coalesced to the next animation frame and only the
+     * last completion state of each frame is delivered, with the value taken when it happened: if {@link PinView} is
+     * completed and then not completed in the same frame, only the non completion is delivered, or nothing at all when
+     * non completions aren't sent (see {@link #setDeleteOnClick(boolean)}). The listener is called from the executor,
+     * so views must not be changed from it directly.
+     *
+     * @param executor executor of the listener, or null to call it right away from the main thread
+     */
+    public void setOnCompleteExecutor(Executor executor) {
+        mOnCompleteExecutor = executor;
+    }
+
+    /**
+     * Verify every completed PIN on {@link AsyncTask#THREAD_POOL_EXECUTOR}, see
+     * {@link #setPinVerifier(PinVerifier, Executor, PinVerifier.Callback)}.
+     */
+    public <T> void setPinVerifier(PinVerifier<T> verifier, PinVerifier.Callback<T> callback) {
+        setPinVerifier(verifier, AsyncTask.THREAD_POOL_EXECUTOR, callback);
+    }
+
+    /**
+     * Verify every completed PIN on a background executor, with the result delivered on the main thread.
+     * A verification is cancelled as soon as the PIN changes or {@link PinView} is cleared or detached from its
+     * window, and its result is never delivered.
+     *
+     * @param verifier verifier of the PIN, or null to stop verifying
+     * @param executor executor of the verifier
+     * @param callback callback with the result
+     */
+    public <T> void setPinVerifier(PinVerifier<T> verifier, Executor executor, PinVerifier.Callback<T> callback) {
+        cancelVerification();
+        mPinVerification = verifier != null ? new PinVerification<T>(verifier, executor, callback) : null;
+        setSpeculativeVerification(mSpeculativeBudget);
+    }
+
+    /**
+     * Verify in advance the ten digits the last empty PinBox can get, so the result is ready, or nearly ready, when
+     * the PIN is completed. It's only done for numeric PinBoxes of one character, while a single one is empty.
+     * Speculative results are dropped as soon as any other PinBox changes.
+     *
+     * The verifier is called with PINs the user may never enter, so it must be free of side effects: it can't count
+     * failed attempts, lock an account or log the PIN. Disabled by default.
+     *
+     * @param maxParallel maximum number of speculative verifications running at once on the executor of the verifier,
+     *                    0 to disable them
+     */
+    public void setSpeculativeVerification(int maxParallel) {
+        mSpeculativeBudget = Math.max(maxParallel, 0);
+        if (mPinVerification != null) {
+            mPinVerification.setSpeculativeBudget(maxParallel);
+            if (maxParallel > 0) {
+                speculate(mPinVerification);
+            }
+        }
+    }
+
+    /**
+     * Set a source of one-time codes, started while {@link PinView} is attached to its window.
+     * Each received code is checked and written in every PinBox at once, calling {@link OnCompleteListener} once.
+     *
+     * @param otpSource source of codes, or null to stop the current one
+     */
+    public void setOtpSource(OtpSource otpSource) {
+        if (mOtpSource != null) {
+            mOtpSource.stop();
+        }
+        mOtpSource = otpSource;
+        if (otpSource != null && getWindowToken() != null) {
+            otpSource.start(mOtpDispatcher);
+        }
+    }
+
+    /**
+     * Write a one-time code in every PinBox at once. Spaces and dashes are ignored, and the code is rejected if
+     * it doesn't have exactly one character for each position of {@link PinView} or if the PinBoxes don't accept it.
+     * It must be called from the main thread, see {@link OtpReceiver} to receive codes from other threads.
+     *
+     * @param code one-time code
+     * @return true if the code has been written
+     */
+    public boolean setOtp(CharSequence code) {
+        if (code == null) {
+            return false;
+        }
+        int inputType = getPinInputType();
+        int length = mNumberPinBoxes * mNumberCharacters;
+        if (mOtpCode.length != length) {
+            mOtpCode = new char[length];
+        }
+        //Separators are stripped here: with a text input type, fill() would write a dash in a PinBox
+        int count = 0;
+        try {
+            for (int i = 0; i < code.length(); i++) {
+                char character = code.charAt(i);
+                if (Character.isWhitespace(character) || character == '-') {
+                    continue;
+                }
+                if (count == length || !isAccepted(inputType, character)) {
+                    return false;
+                }
+                mOtpCode[count++] = character;
+            }
+            if (count != length) {
+                return false;
+            }
+            setPinBoxes(CharBuffer.wrap(mOtpCode), 0);
+            return true;
+        } finally {
+            Arrays.fill(mOtpCode, '\0');
+        }
+    }
+
+    /**
+     * Batch of changes for {@link PinView}, see {@link PinView#edit()}.
+     * Changes are recorded and nothing is applied until {@link #apply()} is called, which restyles each PinBox,
+     * title and split a single time.
+     */
+    public final class Editor {
+
+        private static final int MASK_PASSWORD          = 1;
+        private static final int NATIVE_PIN_BOX         = 1 << 1;
+        private static final int CUSTOM_DRAWABLE        = 1 << 2;
+        private static final int NUMBER_CHARACTERS      = 1 << 3;
+        private static final int SPLIT                  = 1 << 4;
+        private static final int SIZE_SPLIT             = 1 << 5;
+        private static final int TEXT_SIZE_PIN_BOXES    = 1 << 6;
+        private static final int TEXT_SIZE_TITLES       = 1 << 7;
+        private static final int COLOR_TEXT_PIN_BOXES   = 1 << 8;
+        private static final int COLOR_TITLES           = 1 << 9;
+        private static final int COLOR_SPLIT            = 1 << 10;
+        private static final int DELETE_ON_CLICK        = 1 << 11;
+        private static final int KEYBOARD_MANDATORY     = 1 << 12;
+
+        private int mChanges;
+        private boolean mMaskPassword;
+        private boolean mNativePinBox;
+        private int mCustomDrawablePinBox;
+        private int mNumberCharacters;
+        private String mSplit;
+        private float mSizeSplit;
+        private float mTextSizePinBoxes;
+        private float mTextSizeTitles;
+        private int mColorTextPinBoxes;
+        private int mColorTitles;
+        private int mColorSplit;
+        private boolean mDeleteOnClick;
+        private boolean mKeyboardMandatory;
+
+        private Editor() {
+        }
+
+        public Editor setMaskPassword(boolean maskPassword) {
+            mMaskPassword = maskPassword;
+            mChanges |= MASK_PASSWORD;
+            return this;
+        }
+
+        public Editor setNativePinBox(boolean nativePinBox) {
+            mNativePinBox = nativePinBox;
+            mChanges |= NATIVE_PIN_BOX;
+            return this;
+        }
+
+        public Editor setCustomDrawablePinBox(int customDrawablePinBox) {
+            mCustomDrawablePinBox = customDrawablePinBox;
+            mChanges |= CUSTOM_DRAWABLE;
+            return this;
+        }
+
+        public Editor setNumberCharacters(int numberCharacters) {
+            mNumberCharacters = numberCharacters;
+            mChanges |= NUMBER_CHARACTERS;
+            return this;
+        }
+
+        public Editor setSplit(String split) {
+            mSplit = split;
+            mChanges |= SPLIT;
+            return this;
+        }
+
+        public Editor setSizeSplit(float sizeSplit) {
+            mSizeSplit = sizeSplit;
+            mChanges |= SIZE_SPLIT;
+            return this;
+        }
+
+        public Editor setTextSizePinBoxes(float textSizePinBoxes) {
+            mTextSizePinBoxes = textSizePinBoxes;
+            mChanges |= TEXT_SIZE_PIN_BOXES;
+            return this;
+        }
+
+        public Editor setTextSizeTitles(float textSizeTitles) {
+            mTextSizeTitles = textSizeTitles;
+            mChanges |= TEXT_SIZE_TITLES;
+            return this;
+        }
+
+        public Editor setColorTextPinBoxes(int color) {
+            mColorTextPinBoxes = color;
+            mChanges |= COLOR_TEXT_PIN_BOXES;
+            return this;
+        }
+
+        public Editor setColorTitles(int color) {
+            mColorTitles = color;
+            mChanges |= COLOR_TITLES;
+            return this;
+        }
+
+        public Editor setColorSplit(int color) {
+            mColorSplit = color;
+            mChanges |= COLOR_SPLIT;
+            return this;
+        }
+
+        public Editor setDeleteOnClick(boolean deleteOnClick) {
+            mDeleteOnClick = deleteOnClick;
+            mChanges |= DELETE_ON_CLICK;
+            return this;
+        }
+
+        public Editor setKeyboardMandatory(boolean keyboardMandatory) {
+            mKeyboardMandatory = keyboardMandatory;
+            mChanges |= KEYBOARD_MANDATORY;
+            return this;
+        }
+
+        /**
+         * Apply every recorded change, restyling each group of children (PinBoxes, titles and splits) only once.
+         * Children request a new layout from {@link PinView} only the first time, so a single layout is done.
+         */
+        public void apply() {
+            int refresh = 0;
+            if ((mChanges & MASK_PASSWORD) != 0) {
+                PinView.this.setMaskPassword(mMaskPassword, false);
+                refresh |= REFRESH_PIN_BOXES;
+            }
+            if ((mChanges & NATIVE_PIN_BOX) != 0) {
+                PinView.this.setNativePinBox(mNativePinBox, false);
+                refresh |= REFRESH_PIN_BOXES;
+            }
+            if ((mChanges & CUSTOM_DRAWABLE) != 0) {
+                PinView.this.setCustomDrawablePinBox(mCustomDrawablePinBox, false);
+                refresh |= REFRESH_PIN_BOXES;
+            }
+            if ((mChanges & NUMBER_CHARACTERS) != 0) {
+                PinView.this.setNumberCharacters(mNumberCharacters, false);
+                refresh |= REFRESH_PIN_BOXES;
+            }
+            if ((mChanges & SPLIT) != 0) {
+                PinView.this.setSplit(mSplit, false);
+                refresh |= REFRESH_SPLITS;
+            }
+            if ((mChanges & SIZE_SPLIT) != 0) {
+                PinView.this.setSizeSplit(mSizeSplit, false);
+                refresh |= REFRESH_SPLITS;
+            }
+            if ((mChanges & TEXT_SIZE_PIN_BOXES) != 0) {
+                PinView.this.setTextSizePinBoxes(mTextSizePinBoxes, false);
+                refresh |= REFRESH_PIN_BOXES;
+            }
+            if ((mChanges & TEXT_SIZE_TITLES) != 0) {
+                PinView.this.setTextSizeTitles(mTextSizeTitles, false);
+                refresh |= REFRESH_TITLES;
+            }
+            if ((mChanges & COLOR_TEXT_PIN_BOXES) != 0) {
+                PinView.this.setColorTextPinBoxes(mColorTextPinBoxes, false);
+                refresh |= REFRESH_PIN_BOXES;
+            }
+            if ((mChanges & COLOR_TITLES) != 0) {
+                PinView.this.setColorTitles(mColorTitles, false);
+                refresh |= REFRESH_TITLES;
+            }
+            if ((mChanges & COLOR_SPLIT) != 0) {
+                PinView.this.setColorSplit(mColorSplit, false);
+                refresh |= REFRESH_SPLITS;
+            }
+            if ((mChanges & DELETE_ON_CLICK) != 0) {
+                PinView.this.setDeleteOnClick(mDeleteOnClick);
+            }
+            if ((mChanges & KEYBOARD_MANDATORY) != 0) {
+                PinView.this.setKeyboardMandatory(mKeyboardMandatory);
+            }
+            mChanges = 0;
+            refreshStyles(refresh);
+        }
+    }
+
+    /**
+     * Receives codes from {@link OtpSource} on any thread and writes them from the main thread.
+     */
+    private class OtpDispatcher implements OtpReceiver {
+
+        @Override
+        public void onOtpReceived(CharSequence code) {
+            if (code == null) {
+                return;
+            }
+            final char[] value = new char[code.length()];
+            TextUtils.getChars(code, 0, code.length(), value, 0);
+            post(new Runnable() {
+                @Override
+                public void run() {
+                    if (!setOtp(CharBuffer.wrap(value))) {
+                        Log.w(LOG_TAG, "Invalid one-time code for PinView");
+                    }
+                    Arrays.fill(value, '\0');
+                }
+            });
+        }
+    }
+
+    /**
+     * Source of one-time codes for {@link PinView}: autofill, a broadcast, an SMS API or a fake source in tests.
+     * See {@link #setOtpSource(OtpSource)}.
+     *
+     * Example:
+     *
+     *      pinView.setOtpSource(new PinView.OtpSource() {
+     *
+     *          public void start(PinView.OtpReceiver receiver) {
+     *              //Register and call receiver.onOtpReceived(code) for each code
+     *          }
+     *
+     *          public void stop() {
+     *              //Unregister
+     *          }
+     *      });
+     */
+    public interface OtpSource {
+
+        /**
+         * Start delivering codes, called when {@link PinView} is attached to its window
+         *
+         * @param receiver receiver of the codes
+         */
+        void start(OtpReceiver receiver);
+
+        /**
+         * Stop delivering codes, called when {@link PinView} is detached from its window or the source is replaced
+         */
+        void stop();
+    }
+
+    /**
+     * Receiver of the codes of an {@link OtpSource}. It can be called from any thread.
+     */
+    public interface OtpReceiver {
+
+        /**
+         * @param code received one-time code, it is copied so it can be wiped afterwards
+         */
+        void onOtpReceived(CharSequence code);
+    }
+
     /**
      * Interface for a callback when {@link PinView} is fully completed or not.
      * Container Activity/Fragment must implement this interface
@@ -3,8 +3,13 @@ package com.dpizarro.pinview.library;
 import android.app.Service;
 import android.content.Context;
 import android.content.res.TypedArray;
+import android.graphics.Color;
+import android.graphics.drawable.Drawable;
 import android.text.Editable;
 import android.text.InputFilter;
+import android.text.InputType;
+import android.text.Spanned;
+import android.text.TextUtils;
 import android.text.TextWatcher;
 import android.text.method.HideReturnsTransformationMethod;
 import android.text.method.PasswordTransformationMethod;
@@ -13,13 +18,18 @@ import android.util.Log;
 import android.view.Gravity;
 import android.view.KeyEvent;
 import android.view.LayoutInflater;
+import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.inputmethod.EditorInfo;
 import android.view.inputmethod.InputMethodManager;
 import android.widget.EditText;
 import android.widget.LinearLayout;
 import android.widget.TextView;
 
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
 /*
  * Copyright (C) 2015 David Pizarro
  *
@@ -39,6 +49,26 @@ abstract class PinViewBaseHelper extends LinearLayout implements TextWatcher, Vi
 
     private static final String LOG_TAG = PinViewBaseHelper.class.getSimpleName();
 
+    static final int REFRESH_PIN_BOXES  = 1;
+    static final int REFRESH_TITLES     = 1 << 1;
+    static final int REFRESH_SPLITS     = 1 << 2;
+
+    static final int STYLE_PIN_BOX_FILTERS          = 1;
+    static final int STYLE_PIN_BOX_TRANSFORMATION   = 1 << 1;
+    static final int STYLE_PIN_BOX_BACKGROUND       = 1 << 2;
+    static final int STYLE_PIN_BOX_TEXT_COLOR       = 1 << 3;
+    static final int STYLE_PIN_BOX_TEXT_SIZE        = 1 << 4;
+    static final int STYLE_TITLE_TEXT_COLOR         = 1 << 5;
+    static final int STYLE_TITLE_TEXT_SIZE          = 1 << 6;
+    static final int STYLE_SPLIT_TEXT               = 1 << 7;
+    static final int STYLE_SPLIT_TEXT_COLOR         = 1 << 8;
+    static final int STYLE_SPLIT_TEXT_SIZE          = 1 << 9;
+
+    static final int STYLE_PIN_BOX = STYLE_PIN_BOX_FILTERS | STYLE_PIN_BOX_TRANSFORMATION | STYLE_PIN_BOX_BACKGROUND
+            | STYLE_PIN_BOX_TEXT_COLOR | STYLE_PIN_BOX_TEXT_SIZE;
+    static final int STYLE_TITLE = STYLE_TITLE_TEXT_COLOR | STYLE_TITLE_TEXT_SIZE;
+    static final int STYLE_SPLIT = STYLE_SPLIT_TEXT | STYLE_SPLIT_TEXT_COLOR | STYLE_SPLIT_TEXT_SIZE;
+
     /**
      * Attributes
      */
@@ -49,6 +79,8 @@ abstract class PinViewBaseHelper extends LinearLayout implements TextWatcher, Vi
     boolean mDeleteOnClick      = PinViewSettings.DEFAULT_DELETE_ON_CLICK;
     boolean mMaskPassword       = PinViewSettings.DEFAULT_MASK_PASSWORD;
     boolean mNativePinBox       = PinViewSettings.DEFAULT_NATIVE_PIN_BOX;
+    boolean mCanvasMode         = PinViewSettings.DEFAULT_CANVAS_MODE;
+    boolean mSingleInput        = PinViewSettings.DEFAULT_SINGLE_INPUT;
     int mCustomDrawablePinBox   = PinViewSettings.DEFAULT_CUSTOM_PIN_BOX;
     int mColorTextPinBoxes      = PinViewSettings.DEFAULT_TEXT_COLOR_PIN_BOX;
     int mColorTextTitles        = PinViewSettings.DEFAULT_TEXT_COLOR_TITLES;
@@ -61,11 +93,25 @@ abstract class PinViewBaseHelper extends LinearLayout implements TextWatcher, Vi
     private int currentFocus;
     boolean lastCompleted = false;
     private InputMethodManager inputMethodManager;
-    LinearLayout mLinearLayoutPinTexts;
-    LinearLayout mLinearLayoutPinBoxes;
-    int[] pinBoxesIds;
-    int[] pinTitlesIds;
-    int[] pinSplitsIds;
+    PinLayout mPinLayout;
+    EditText mHiddenInput;
+    private int mHiddenInputLength;
+    private char[] mPinBoxValue = new char[0];
+    PinCanvasView mPinCanvasView;
+    final PinBuffer mPinBuffer = new PinBuffer();
+    EditText[] pinBoxes = new EditText[0];
+    TextView[] pinTitles;
+    TextView[] pinSplits = new TextView[0];
+    private int mDirtyStyles;
+    private InputFilter[] mPinBoxFilters;
+    private int mPinBoxFiltersLength;
+    private boolean mBulkMutation;
+    private PinViewStyleCache.ResolvedStyle mResolvedStyle;
+    private long mShowImeStart;
+    /**
+     * True when an attribute saved in {@link PinViewSettings} has changed since the last saved state
+     */
+    boolean mSettingsChanged = true;
 
     /**
      * Default constructor
@@ -78,8 +124,10 @@ abstract class PinViewBaseHelper extends LinearLayout implements TextWatcher, Vi
         if (isInEditMode()) {
             createEditModeView(context);
         } else {
+            long start = PinViewMetrics.start();
             createView(context);
             getAttributes(context, attrs);
+            PinViewMetrics.record(PinViewMetrics.CONSTRUCT, start);
         }
     }
 
@@ -103,8 +151,7 @@ abstract class PinViewBaseHelper extends LinearLayout implements TextWatcher, Vi
         ((LayoutInflater) context.getSystemService(Context.LAYOUT_INFLATER_SERVICE)).inflate(R.layout.pin_view, this,
                 true);
         inputMethodManager = (InputMethodManager) getContext().getSystemService(Service.INPUT_METHOD_SERVICE);
-        mLinearLayoutPinTexts = (LinearLayout) findViewById(R.id.ll_pin_texts);
-        mLinearLayoutPinBoxes = (LinearLayout) findViewById(R.id.ll_pin_edit_texts);
+        mPinLayout = (PinLayout) findViewById(R.id.pin_layout);
     }
 
     /**
@@ -128,17 +175,21 @@ abstract class PinViewBaseHelper extends LinearLayout implements TextWatcher, Vi
                         .getBoolean(R.styleable.PinView_deleteOnClick, PinViewSettings.DEFAULT_DELETE_ON_CLICK);
                 mNativePinBox = typedArray
                         .getBoolean(R.styleable.PinView_nativePinBox, PinViewSettings.DEFAULT_NATIVE_PIN_BOX);
+                mCanvasMode = typedArray
+                        .getBoolean(R.styleable.PinView_canvasMode, PinViewSettings.DEFAULT_CANVAS_MODE);
+                mSingleInput = typedArray
+                        .getBoolean(R.styleable.PinView_singleInput, PinViewSettings.DEFAULT_SINGLE_INPUT);
                 mCustomDrawablePinBox = typedArray
                         .getResourceId(R.styleable.PinView_drawablePinBox, PinViewSettings.DEFAULT_CUSTOM_PIN_BOX);
                 mColorTextPinBoxes = typedArray
                         .getColor(R.styleable.PinView_colorTextPinBox,
-                                getResources().getColor(PinViewSettings.DEFAULT_TEXT_COLOR_PIN_BOX));
+                                PinViewStyleCache.resolveColor(getResources(), PinViewSettings.DEFAULT_TEXT_COLOR_PIN_BOX));
                 mColorTextTitles = typedArray
                         .getColor(R.styleable.PinView_colorTextTitles,
-                                getResources().getColor(PinViewSettings.DEFAULT_TEXT_COLOR_TITLES));
+                                PinViewStyleCache.resolveColor(getResources(), PinViewSettings.DEFAULT_TEXT_COLOR_TITLES));
                 mColorSplit = typedArray
                         .getColor(R.styleable.PinView_colorSplit,
-                                getResources().getColor(PinViewSettings.DEFAULT_COLOR_SPLIT));
+                                PinViewStyleCache.resolveColor(getResources(), PinViewSettings.DEFAULT_COLOR_SPLIT));
                 mTextSizePinBoxes = typedArray
                         .getDimension(R.styleable.PinView_textSizePinBox,
                                 getResources().getDimension(PinViewSettings.DEFAULT_TEXT_SIZE_PIN_BOX));
@@ -168,26 +219,207 @@ abstract class PinViewBaseHelper extends LinearLayout implements TextWatcher, Vi
     }
 
 
+    /**
+     * Show the single {@link PinCanvasView} or the {@link PinLayout} of PinBoxes {@link EditText} and titles {@link TextView},
+     * according to {@link #mCanvasMode}
+     */
+    void updateRenderMode() {
+        if (mCanvasMode) {
+            if (mPinCanvasView == null || mPinCanvasView.getParent() == null) {
+                mPinBuffer.wipe();
+                mPinCanvasView = new PinCanvasView(this);
+                releaseChildren();
+                mPinLayout.setVisibility(GONE);
+                addView(mPinCanvasView, new LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
+                        ViewGroup.LayoutParams.WRAP_CONTENT));
+            }
+        } else if (mPinCanvasView != null && mPinCanvasView.getParent() != null) {
+            mPinBuffer.wipe();
+            removeView(mPinCanvasView);
+            mPinLayout.setVisibility(VISIBLE);
+        }
+
+        if (mSingleInput && !mCanvasMode) {
+            if (mHiddenInput == null) {
+                mHiddenInput = generateHiddenInput();
+                mHiddenInputLength = -1;
+                addView(mHiddenInput, new LayoutParams(1, 1));
+            }
+        } else if (mHiddenInput != null) {
+            removeView(mHiddenInput);
+            mHiddenInput = null;
+        }
+    }
+
+    /**
+     * Generate the single {@link EditText} which owns the IME connection when {@link #mSingleInput} is enabled.
+     * It isn't visible, its value is shown by the PinBoxes.
+     *
+     * @return new hidden input
+     */
+    private EditText generateHiddenInput() {
+        EditText hiddenInput = new EditText(getContext());
+        hiddenInput.setInputType(PinViewPool.DEFAULT_PIN_BOX_INPUT_TYPE);
+        hiddenInput.setImeOptions(EditorInfo.IME_FLAG_NO_EXTRACT_UI);
+        hiddenInput.setBackgroundColor(Color.TRANSPARENT);
+        hiddenInput.setTextColor(Color.TRANSPARENT);
+        hiddenInput.setCursorVisible(false);
+        hiddenInput.setLongClickable(false);
+        hiddenInput.setPadding(0, 0, 0, 0);
+        hiddenInput.addTextChangedListener(mHiddenInputWatcher);
+        hiddenInput.setOnFocusChangeListener(this);
+        return hiddenInput;
+    }
+
+    /**
+     * Adapt the hidden input to the current PinBoxes, removing the characters which don't fit anymore.
+     *
+     * @param inputType input type of each PinBox or -1 to keep the current one
+     */
+    void updateHiddenInput(int inputType) {
+        if (mHiddenInput == null) {
+            return;
+        }
+        if (inputType != -1 && mHiddenInput.getInputType() != inputType) {
+            mHiddenInput.setInputType(inputType);
+        }
+        int length = mNumberPinBoxes * mNumberCharacters;
+        if (mHiddenInputLength != length) {
+            mHiddenInput.setFilters(new InputFilter[]{new InputFilter.LengthFilter(length)});
+            mHiddenInputLength = length;
+        }
+        Editable text = mHiddenInput.getText();
+        if (text.length() > length) {
+            text.delete(length, text.length());
+        } else {
+            showHiddenInput(text);
+        }
+    }
+
+    /**
+     * Show the value of the hidden input in the PinBoxes: it's written in {@link #mPinBuffer}, filling each PinBox
+     * before the next one, and the PinBoxes are rendered from it.
+     *
+     * @param text value of the hidden input
+     */
+    private void showHiddenInput(Editable text) {
+        boolean changed = mPinBuffer.fill(text, 0, isNumeric(mHiddenInput.getInputType()));
+        renderPinBoxes();
+        if (changed) {
+            notifyPinViewChanged();
+        }
+        onPinBoxesWritten(changed);
+    }
+
+    private static boolean regionMatches(CharSequence text, char[] value, int length) {
+        if (text.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (text.charAt(i) != value[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private final TextWatcher mHiddenInputWatcher = new TextWatcher() {
+        @Override
+        public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+        }
+
+        @Override
+        public void onTextChanged(CharSequence s, int start, int before, int count) {
+        }
+
+        @Override
+        public void afterTextChanged(Editable s) {
+            if (!mBulkMutation) {
+                showHiddenInput(s);
+            }
+        }
+    };
+
+    /**
+     * With {@link #mSingleInput}, a touch on {@link PinView} gives the focus to the hidden input.
+     * If {@link #mDeleteOnClick} is enabled, the touched PinBox and the following ones are cleared.
+     */
+    @Override
+    public boolean onInterceptTouchEvent(MotionEvent ev) {
+        if (mHiddenInput != null && ev.getActionMasked() == MotionEvent.ACTION_DOWN) {
+            if (mDeleteOnClick) {
+                int index = findPinBox(ev.getX() - mPinLayout.getLeft(), ev.getY() - mPinLayout.getTop());
+                Editable text = mHiddenInput.getText();
+                if (index != -1 && index * mNumberCharacters < text.length()) {
+                    text.delete(index * mNumberCharacters, text.length());
+                }
+            }
+            mHiddenInput.requestFocus();
+            setImeVisibility(true);
+        }
+        return super.onInterceptTouchEvent(ev);
+    }
+
+    private int findPinBox(float x, float y) {
+        for (int i = 0; i < pinBoxes.length; i++) {
+            EditText pinBox = pinBoxes[i];
+            if (x >= pinBox.getLeft() && x < pinBox.getRight() && y >= pinBox.getTop() && y < pinBox.getBottom()) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Remove every PinBox, split and title, returning them to {@link PinViewPool}
+     */
+    void releaseChildren() {
+        mPinLayout.removeAllViews();
+        if (pinBoxes != null) {
+            for (EditText pinBox : pinBoxes) {
+                PinViewPool.recyclePinBox(pinBox, this);
+            }
+        }
+        if (pinSplits != null) {
+            for (TextView split : pinSplits) {
+                if (split != null) {
+                    PinViewPool.recycleSplit(split);
+                }
+            }
+        }
+        if (pinTitles != null) {
+            for (TextView pinTitle : pinTitles) {
+                PinViewPool.recycleTitle(pinTitle);
+            }
+        }
+        pinBoxes = new EditText[0];
+        pinTitles = new TextView[0];
+        pinSplits = new TextView[0];
+    }
+
     /**
      * Generate a PinBox {@link EditText} with all attributes to add to {@link PinView}
      *
-     * @param i index of new PinBox
      * @param inputType inputType to new PinBox
      * @return new PinBox
      */
-    EditText generatePinBox(int i, int inputType) {
-        EditText editText = (EditText) LayoutInflater.from(getContext()).inflate(R.layout.partial_pin_box, this, false);
-        int generateViewId = PinViewUtils.generateViewId();
-        editText.setId(generateViewId);
-        editText.setTag(i);
+    EditText generatePinBox(int inputType) {
+        EditText editText = PinViewPool.obtainPinBox(getContext());
+        if (editText == null) {
+            editText = (EditText) LayoutInflater.from(getContext()).inflate(R.layout.partial_pin_box, mPinLayout, false);
+        }
         if (inputType != -1) {
             editText.setInputType(inputType);
         }
+        if (mSingleInput) {
+            editText.setFocusable(false);
+            editText.setFocusableInTouchMode(false);
+            editText.setCursorVisible(false);
+        }
         setStylePinBox(editText);
 
         editText.addTextChangedListener(this);
         editText.setOnFocusChangeListener(this);
-        pinBoxesIds[i] = generateViewId;
 
         return editText;
     }
@@ -197,45 +429,101 @@ abstract class PinViewBaseHelper extends LinearLayout implements TextWatcher, Vi
      *
      * @param editText to set attributes
      */
-    private void setStylePinBox(EditText editText) {
-        editText.setFilters(new InputFilter[]{new InputFilter.LengthFilter(mNumberCharacters)});
+    void setStylePinBox(EditText editText) {
+        setStylePinBox(editText, STYLE_PIN_BOX, getResolvedStyle().mTextSizePinBoxes);
+    }
 
-        if (mMaskPassword) {
-            editText.setTransformationMethod(PasswordTransformationMethod.getInstance());
+    /**
+     * Set a PinBox with the attributes which have changed
+     *
+     * @param editText to set attributes
+     * @param styles combination of STYLE_PIN_BOX_* attributes to set
+     * @param textSize text size of PinBoxes, already converted
+     */
+    private void setStylePinBox(EditText editText, int styles, float textSize) {
+        if ((styles & STYLE_PIN_BOX_FILTERS) != 0) {
+            editText.setFilters(getPinBoxFilters());
         }
-        else{
-            editText.setTransformationMethod(HideReturnsTransformationMethod.getInstance());
+
+        if ((styles & STYLE_PIN_BOX_TRANSFORMATION) != 0) {
+            if (mMaskPassword) {
+                editText.setTransformationMethod(PasswordTransformationMethod.getInstance());
+            }
+            else{
+                editText.setTransformationMethod(HideReturnsTransformationMethod.getInstance());
+            }
         }
 
-        if (mNativePinBox) {
+        if ((styles & STYLE_PIN_BOX_BACKGROUND) != 0) {
+            Drawable background = mNativePinBox ? PinViewDrawables.getNativePinBox(getContext())
+                    : PinViewDrawables.getCustomPinBox(getContext(), mCustomDrawablePinBox);
             if (android.os.Build.VERSION.SDK_INT < android.os.Build.VERSION_CODES.JELLY_BEAN) {
                 //noinspection deprecation
-                editText.setBackgroundDrawable(new EditText(getContext()).getBackground());
+                editText.setBackgroundDrawable(background);
             } else {
-                editText.setBackground(new EditText(getContext()).getBackground());
+                editText.setBackground(background);
             }
-        } else {
-            editText.setBackgroundResource(mCustomDrawablePinBox);
         }
 
-        if (mColorTextPinBoxes != PinViewSettings.DEFAULT_TEXT_COLOR_PIN_BOX) {
+        if ((styles & STYLE_PIN_BOX_TEXT_COLOR) != 0
+                && mColorTextPinBoxes != PinViewSettings.DEFAULT_TEXT_COLOR_PIN_BOX) {
             editText.setTextColor(mColorTextPinBoxes);
         }
-        editText.setTextSize(PinViewUtils.convertPixelToDp(getContext(), mTextSizePinBoxes));
+        if ((styles & STYLE_PIN_BOX_TEXT_SIZE) != 0) {
+            editText.setTextSize(textSize);
+        }
+    }
+
+    /**
+     * Get the filters shared by every PinBox, created again only when the number of characters changes.
+     *
+     * @return filters of a PinBox
+     */
+    private InputFilter[] getPinBoxFilters() {
+        if (mPinBoxFilters == null || mPinBoxFiltersLength != mNumberCharacters) {
+            mPinBoxFilters = new InputFilter[]{new PinBoxFilter(mNumberCharacters)};
+            mPinBoxFiltersLength = mNumberCharacters;
+        }
+        return mPinBoxFilters;
+    }
+
+    /**
+     * Mark attributes to be set on the next restyle of PinBoxes, titles or splits.
+     * Setters only mark the attributes whose value has really changed.
+     *
+     * @param styles combination of STYLE_* attributes
+     */
+    void markStylesDirty(int styles) {
+        mDirtyStyles |= styles;
+        mResolvedStyle = null;
+        mSettingsChanged = true;
+    }
+
+    /**
+     * Get colors and text sizes of the current attributes, ready to be set
+     *
+     * @return resolved style, shared with other {@link PinView}s with the same attributes
+     */
+    PinViewStyleCache.ResolvedStyle getResolvedStyle() {
+        if (mResolvedStyle == null) {
+            mResolvedStyle = PinViewStyleCache.getStyle(getResources(), mColorTextPinBoxes, mColorTextTitles,
+                    mColorSplit, mTextSizePinBoxes, mTextSizeTitles, mSizeSplit);
+        }
+        return mResolvedStyle;
     }
 
     /**
      * Generate a Split {@link TextView} with all attributes to add to {@link PinView}
      *
-     * @param i index of new split
      * @return new split
      */
-    TextView generateSplit(int i) {
-        TextView split = new TextView(getContext());
-        int generateViewId = PinViewUtils.generateViewId();
-        split.setId(generateViewId);
-        setStylesSplit(split);
-        pinSplitsIds[i] = generateViewId;
+    TextView generateSplit() {
+        TextView split = PinViewPool.obtainSplit(getContext());
+        if (split == null) {
+            split = new TextView(getContext());
+        }
+        split.setGravity(Gravity.CENTER_VERTICAL);
+        setStylesSplit(split, STYLE_SPLIT, getResolvedStyle().mSizeSplit);
         return split;
     }
 
@@ -246,70 +534,148 @@ abstract class PinViewBaseHelper extends LinearLayout implements TextWatcher, Vi
      * @return new title
      */
     TextView generatePinText(int i, String[] titles) {
-        TextView pinTitle = (TextView) LayoutInflater.from(getContext())
-                .inflate(R.layout.partial_pin_text, this, false);
-        int generateViewId = PinViewUtils.generateViewId();
-        pinTitle.setId(generateViewId);
+        TextView pinTitle = PinViewPool.obtainTitle(getContext());
+        if (pinTitle == null) {
+            pinTitle = (TextView) LayoutInflater.from(getContext()).inflate(R.layout.partial_pin_text, mPinLayout, false);
+        }
         pinTitle.setText(titles[i]);
-        setStylesPinTitle(pinTitle);
-        pinTitlesIds[i] = generateViewId;
+        setStylesPinTitle(pinTitle, STYLE_TITLE, getResolvedStyle().mTextSizeTitles);
         return pinTitle;
     }
 
     /**
-     * Set a Title with all attributes
+     * Set a Title with the attributes which have changed
      *
      * @param pinTitle to set attributes
+     * @param styles combination of STYLE_TITLE_* attributes to set
+     * @param textSize text size of titles, already converted
      */
-    private void setStylesPinTitle(TextView pinTitle) {
-        if (mColorTextTitles != PinViewSettings.DEFAULT_TEXT_COLOR_TITLES) {
+    private void setStylesPinTitle(TextView pinTitle, int styles, float textSize) {
+        if ((styles & STYLE_TITLE_TEXT_COLOR) != 0 && mColorTextTitles != PinViewSettings.DEFAULT_TEXT_COLOR_TITLES) {
             pinTitle.setTextColor(mColorTextTitles);
         }
-        pinTitle.setTextSize(PinViewUtils.convertPixelToDp(getContext(), mTextSizeTitles));
+        if ((styles & STYLE_TITLE_TEXT_SIZE) != 0) {
+            pinTitle.setTextSize(textSize);
+        }
+    }
+
+    /**
+     * Set style to the groups of children whose attributes have changed, in a single pass for each group.
+     *
+     * @param refresh combination of {@link #REFRESH_PIN_BOXES}, {@link #REFRESH_TITLES} and {@link #REFRESH_SPLITS}
+     */
+    void refreshStyles(int refresh) {
+        if (mCanvasMode) {
+            if (refresh != 0 && mPinCanvasView != null) {
+                mPinCanvasView.refreshStyles();
+            }
+            return;
+        }
+        if ((refresh & REFRESH_PIN_BOXES) != 0) {
+            setStylesPinBoxes();
+        }
+        if ((refresh & REFRESH_TITLES) != 0) {
+            setStylePinTitles();
+        }
+        if ((refresh & REFRESH_SPLITS) != 0) {
+            setStylesSplits();
+        }
     }
 
     /**
-     * Set style to all PinBoxes
+     * Set the changed attributes to all PinBoxes
      */
     void setStylesPinBoxes() {
-        for (int i = 0; i < mNumberPinBoxes; i++) {
-            setStylePinBox(getPinBox(i));
+        int styles = mDirtyStyles & STYLE_PIN_BOX;
+        mDirtyStyles &= ~STYLE_PIN_BOX;
+        if (styles == 0) {
+            return;
+        }
+        long start = PinViewMetrics.start();
+        if (mCanvasMode) {
+            if (mPinCanvasView != null) {
+                mPinCanvasView.refreshStyles();
+            }
+        } else {
+            float textSize = getResolvedStyle().mTextSizePinBoxes;
+            for (int i = 0; i < pinBoxes.length; i++) {
+                setStylePinBox(getPinBox(i), styles, textSize);
+            }
+            if ((styles & STYLE_PIN_BOX_FILTERS) != 0) {
+                //The number of characters has changed, PinBoxes drop the characters which don't fit anymore
+                if (mHiddenInput != null) {
+                    updateHiddenInput(-1);
+                } else if (renderPinBoxes()) {
+                    notifyPinViewChanged();
+                }
+            }
         }
+        PinViewMetrics.record(PinViewMetrics.RESTYLE, start);
     }
 
     /**
-     * Set style to all Titles
+     * Set the changed attributes to all Titles
      */
     void setStylePinTitles() {
-        for (int i = 0; i < mPinTitles.length; i++) {
-            setStylesPinTitle(getPinTitle(i));
+        int styles = mDirtyStyles & STYLE_TITLE;
+        mDirtyStyles &= ~STYLE_TITLE;
+        if (styles == 0) {
+            return;
+        }
+        if (mCanvasMode) {
+            if (mPinCanvasView != null) {
+                mPinCanvasView.refreshStyles();
+            }
+            return;
+        }
+        if (pinTitles == null) {
+            return;
+        }
+        float textSize = getResolvedStyle().mTextSizeTitles;
+        for (int i = 0; i < pinTitles.length; i++) {
+            setStylesPinTitle(getPinTitle(i), styles, textSize);
         }
     }
 
     /**
-     * Set style to all Splits
+     * Set the changed attributes to all Splits
      */
     void setStylesSplits() {
-        for (int i = 0; i < pinSplitsIds.length; i++) {
-            setStylesSplit(getSplit(i));
+        int styles = mDirtyStyles & STYLE_SPLIT;
+        mDirtyStyles &= ~STYLE_SPLIT;
+        if (styles == 0) {
+            return;
+        }
+        if (mCanvasMode) {
+            if (mPinCanvasView != null) {
+                mPinCanvasView.refreshStyles();
+            }
+            return;
+        }
+        float textSize = getResolvedStyle().mSizeSplit;
+        for (int i = 0; i < pinSplits.length; i++) {
+            setStylesSplit(getSplit(i), styles, textSize);
         }
     }
 
     /**
-     * Set a Split with all attributes
+     * Set a Split with the attributes which have changed
      *
      * @param split to set attributes
+     * @param styles combination of STYLE_SPLIT_* attributes to set
+     * @param textSize text size of splits, already converted
      */
-    private void setStylesSplit(TextView split) {
+    private void setStylesSplit(TextView split, int styles, float textSize) {
         if(split!=null){
-            split.setText(mSplit);
-            split.setLayoutParams(new LayoutParams(ViewGroup.LayoutParams.WRAP_CONTENT,
-                    ViewGroup.LayoutParams.MATCH_PARENT));
-            split.setGravity(Gravity.CENTER_VERTICAL);
-            if (mColorSplit != PinViewSettings.DEFAULT_COLOR_SPLIT) {
+            if ((styles & STYLE_SPLIT_TEXT) != 0) {
+                split.setText(mSplit);
+            }
+            if ((styles & STYLE_SPLIT_TEXT_COLOR) != 0 && mColorSplit != PinViewSettings.DEFAULT_COLOR_SPLIT) {
                 split.setTextColor(mColorSplit);
             }
-            split.setTextSize(PinViewUtils.convertPixelToDp(getContext(), mSizeSplit));
+            if ((styles & STYLE_SPLIT_TEXT_SIZE) != 0) {
+                split.setTextSize(textSize);
+            }
         }
     }
 
@@ -327,24 +693,31 @@ abstract class PinViewBaseHelper extends LinearLayout implements TextWatcher, Vi
     }
 
     /**
-     * Set the focus on an empty PinBox {@link EditText}
+     * Set the focus on an empty PinBox {@link EditText}. With {@link #mSingleInput} the hidden input keeps the focus,
+     * and in {@link #mCanvasMode} the PinBox is selected to receive the next characters.
      *
      * @param index PinBox Position
      */
     private void moveToPinBox(int index) {
-        findViewById(pinBoxesIds[index]).requestFocus();
+        if (mCanvasMode) {
+            if (mPinCanvasView != null) {
+                mPinCanvasView.setFocusedPinBox(index);
+            }
+        } else if (mHiddenInput == null) {
+            pinBoxes[index].requestFocus();
+        }
     }
 
     EditText getPinBox(int i) {
-        return (EditText) findViewById(pinBoxesIds[i]);
+        return pinBoxes[i];
     }
 
     private TextView getPinTitle(int i) {
-        return (TextView) findViewById(pinTitlesIds[i]);
+        return pinTitles[i];
     }
 
     private TextView getSplit(int i) {
-        return (TextView) findViewById(pinSplitsIds[i]);
+        return pinSplits[i];
     }
 
     /**
@@ -352,68 +725,264 @@ abstract class PinViewBaseHelper extends LinearLayout implements TextWatcher, Vi
      * Set focus in the next empty PinBox or notify that {@link PinView} is completed.
      */
     private void checkPinBoxesAvailable() {
+        chooseNextAction(mPinBuffer.nextEmptyPinBoxWrapping(currentFocus + 1));
+    }
+
+    /**
+     * Restore every PinBox from a state copied by {@link PinBuffer#saveState(char[])}, box by box, so empty and partly
+     * filled PinBoxes stay where they were. {@link PinView} is only notified if the value has changed.
+     *
+     * @param state saved PinBoxes
+     */
+    void restorePinBoxes(char[] state) {
+        boolean changed = mPinBuffer.restoreState(state);
+        renderPinBoxes();
+        renderHiddenInput();
+        if (changed) {
+            notifyPinViewChanged();
+            onPinBoxesWritten(true);
+        }
+    }
 
-        int index = -1;
-        int i = currentFocus + 1;
-        while (i != currentFocus) {
+    /**
+     * Write PinBoxes at once in {@link #mPinBuffer}, filling each PinBox before the next one, see
+     * {@link PinBuffer#fill(CharSequence, int, boolean)}. Whitespaces and characters not accepted by the input type of
+     * the PinBoxes are skipped. The PinBoxes are then rendered from it, {@link PinView} is notified of the change once
+     * and a single decision is made, see {@link #onPinBoxesWritten(boolean)}.
+     *
+     * @param pin new value, or null to clear PinBoxes
+     * @param fromIndex first PinBox to write, the previous ones are kept
+     */
+    void setPinBoxes(CharSequence pin, int fromIndex) {
+        boolean changed = mPinBuffer.fill(pin, fromIndex, isNumeric(getPinInputType()));
+        if (changed) {
+            renderPinBoxes();
+            renderHiddenInput();
+            notifyPinViewChanged();
+        }
+        onPinBoxesWritten(changed);
+    }
 
-            if (i > (mNumberPinBoxes - 1)) {
-                i = 0;
+    /**
+     * Single decision once PinBoxes have been written at once: the focus goes to the first PinBox to write or
+     * {@link PinView} is notified as completed, only once. A changed value resets the completed state first, so a
+     * completed PIN overwritten with another complete one is notified (and verified) again.
+     *
+     * With the hidden input characters are written one after another, so the next PinBox to write is the first one
+     * which isn't full. Otherwise it's the first empty one.
+     *
+     * @param changed true if any PinBox has changed
+     */
+    private void onPinBoxesWritten(boolean changed) {
+        if (mPinBuffer.getNumberPinBoxes() == 0) {
+            return;
+        }
+        if (changed && lastCompleted) {
+            notifyPinViewNotCompleted();
+        }
+        int index = mHiddenInput != null ? mPinBuffer.nextIncompletePinBox(0) : mPinBuffer.nextEmptyPinBox(0);
+        if (index == -1) {
+            if (!lastCompleted) {
+                notifyPinViewCompleted();
             }
+        } else {
+            notifyPinViewNotCompleted();
+            moveToPinBox(index);
+        }
+    }
 
-            if (pinBoxIsEmpty(i)) {
-                index = i;
-                break;
+    /**
+     * Show the value of {@link #mPinBuffer} in the PinBoxes, writing only the PinBoxes whose text is different.
+     * Rendered PinBoxes don't notify {@link PinView} one by one, the caller notifies the whole write once.
+     *
+     * @return true if any PinBox has been written
+     */
+    private boolean renderPinBoxes() {
+        if (mCanvasMode) {
+            if (mPinCanvasView != null) {
+                mPinCanvasView.invalidate();
+            }
+            return false;
+        }
+        boolean written = false;
+        if (mPinBoxValue.length != mNumberCharacters) {
+            mPinBoxValue = new char[mNumberCharacters];
+        }
+        mBulkMutation = true;
+        try {
+            int numberPinBoxes = Math.min(pinBoxes.length, mPinBuffer.getNumberPinBoxes());
+            for (int i = 0; i < numberPinBoxes; i++) {
+                EditText pinBox = pinBoxes[i];
+                int length = mPinBuffer.getPinBox(i, mPinBoxValue, 0);
+                if (!regionMatches(pinBox.getText(), mPinBoxValue, length)) {
+                    written = true;
+                    if (length == 0) {
+                        pinBox.getText().clear();
+                    } else {
+                        pinBox.setText(mPinBoxValue, 0, length);
+                    }
+                }
             }
-            i++;
+        } finally {
+            mBulkMutation = false;
+            Arrays.fill(mPinBoxValue, '\0');
         }
-        chooseNextAction(index);
+        return written;
     }
 
     /**
-     * Set results in current {@link PinView}, considering the number of character PinBoxes and each PinBox.
-     *
-     * @param pinResults saved results to set
-     */
-    void setPinResults(String pinResults) {
-        for (int i = 0; i < mNumberPinBoxes; i++) {
-            if (pinResults != null) {
-                int start = i*mNumberCharacters;
-                String valuePinBox = pinResults.substring(start, start + mNumberCharacters);
-                if (!valuePinBox.trim().isEmpty()) {
-                    getPinBox(i).setText(valuePinBox);
+     * With {@link #mSingleInput}, write the characters of every PinBox of {@link #mPinBuffer} in the hidden input,
+     * one after another.
+     */
+    private void renderHiddenInput() {
+        if (mHiddenInput == null) {
+            return;
+        }
+        if (mPinBoxValue.length != mNumberCharacters) {
+            mPinBoxValue = new char[mNumberCharacters];
+        }
+        Editable text = mHiddenInput.getText();
+        mBulkMutation = true;
+        try {
+            text.clear();
+            for (int i = 0; i < mPinBuffer.getNumberPinBoxes(); i++) {
+                int length = mPinBuffer.getPinBox(i, mPinBoxValue, 0);
+                for (int j = 0; j < length; j++) {
+                    text.append(mPinBoxValue[j]);
                 }
-                else{
-                    break;
+            }
+        } finally {
+            mBulkMutation = false;
+            Arrays.fill(mPinBoxValue, '\0');
+        }
+    }
+
+    /**
+     * @return input type of the PinBoxes
+     */
+    int getPinInputType() {
+        if (mCanvasMode && mPinCanvasView != null) {
+            return mPinCanvasView.getInputType();
+        }
+        if (mHiddenInput != null) {
+            return mHiddenInput.getInputType();
+        }
+        return pinBoxes.length > 0 ? pinBoxes[0].getInputType() : PinViewPool.DEFAULT_PIN_BOX_INPUT_TYPE;
+    }
+
+    /**
+     * @param inputType input type of a PinBox
+     * @param character character to write in the PinBox
+     * @return true if the character can be written in the PinBox
+     */
+    static boolean isAccepted(int inputType, char character) {
+        return PinBuffer.isAccepted(isNumeric(inputType), character);
+    }
+
+    /**
+     * @param inputType input type of a PinBox
+     * @return true if the PinBox only accepts digits
+     */
+    static boolean isNumeric(int inputType) {
+        return (inputType & InputType.TYPE_MASK_CLASS) == InputType.TYPE_CLASS_NUMBER;
+    }
+
+    /**
+     * Same limit as {@link InputFilter.LengthFilter}, but a text longer than one character which doesn't fit in a
+     * PinBox (a pasted code) is written in the following PinBoxes too, see {@link #setPinBoxes(CharSequence, int)}.
+     * A code as long as the whole {@link PinView} is written from the first PinBox.
+     */
+    private class PinBoxFilter implements InputFilter {
+
+        private final int mMax;
+
+        PinBoxFilter(int max) {
+            mMax = max;
+        }
+
+        @Override
+        public CharSequence filter(CharSequence source, int start, int end, Spanned dest, int dstart, int dend) {
+            int keep = mMax - (dest.length() - (dend - dstart));
+            if (end - start <= keep) {
+                return null;
+            }
+            if (end - start > 1 && !mBulkMutation) {
+                int index = indexOfPinBox(dest);
+                if (index != -1) {
+                    postPaste(source, start, end, end - start >= mNumberPinBoxes * mNumberCharacters ? 0 : index);
+                    return "";
                 }
             }
+            if (keep <= 0) {
+                return "";
+            }
+            return source.subSequence(start, start + keep);
         }
     }
 
+    /**
+     * Write a pasted text once the current edit of the PinBox has finished
+     */
+    private void postPaste(CharSequence source, int start, int end, final int fromIndex) {
+        final char[] pasted = new char[end - start];
+        TextUtils.getChars(source, start, end, pasted, 0);
+        post(new Runnable() {
+            @Override
+            public void run() {
+                setPinBoxes(CharBuffer.wrap(pasted), fromIndex);
+                Arrays.fill(pasted, '\0');
+            }
+        });
+    }
+
     /**
      * Check for an empty PinBox {@link EditText} from the first.
      * Set focus in the first empty PinBox or notify that {@link PinView} is completed.
      */
     void checkPinBoxesAvailableOrder() {
+        chooseNextAction(mPinBuffer.nextEmptyPinBox(0));
+    }
 
-        int index = -1;
-        for (int i = 0; i < mNumberPinBoxes; i++) {
-            if (pinBoxIsEmpty(i)) {
-                index = i;
-                break;
+    /**
+     * Find the PinBox {@link EditText} which holds a text, starting by the focused one.
+     *
+     * @param text text of a PinBox
+     * @return PinBox position or -1 if it isn't a current PinBox
+     */
+    private int indexOfPinBox(CharSequence text) {
+        if (currentFocus < pinBoxes.length && pinBoxes[currentFocus].getText() == text) {
+            return currentFocus;
+        }
+        for (int i = 0; i < pinBoxes.length; i++) {
+            if (pinBoxes[i].getText() == text) {
+                return i;
             }
         }
-        chooseNextAction(index);
+        return -1;
     }
 
     /**
-     * Check if a determinate PinBox {@link EditText} is empty.
+     * Keep the position of the focused PinBox {@link EditText}, so it isn't searched again on each keystroke.
+     * The position is read from the PinBox, see {@link #setPinBoxIndex(EditText, int)}.
      *
-     * @param i PinBox position to check
-     * @return State of PinBox
+     * @param pinBox focused PinBox
      */
-    private boolean pinBoxIsEmpty(int i) {
-        return getPinBox(i).getText().toString().isEmpty();
+    void setCurrentFocus(View pinBox) {
+        Object index = pinBox.getTag(R.id.pin_box_index);
+        if (index != null) {
+            currentFocus = (Integer) index;
+        }
+    }
+
+    /**
+     * Keep the position of a PinBox {@link EditText} on the PinBox itself, so the focused one is found without
+     * searching every PinBox.
+     *
+     * @param pinBox PinBox added to {@link #pinBoxes}
+     * @param index  position of the PinBox
+     */
+    static void setPinBoxIndex(EditText pinBox, int index) {
+        pinBox.setTag(R.id.pin_box_index, index);
     }
 
     /**
@@ -423,18 +992,23 @@ abstract class PinViewBaseHelper extends LinearLayout implements TextWatcher, Vi
      */
     @Override
     public void onTextChanged(CharSequence s, int start, int before, int count) {
-
-        if (findFocus() != null) {
-            currentFocus = Integer.parseInt(findFocus().getTag().toString());
+        if (mBulkMutation) {
+            //Rendered from mPinBuffer, the whole write is notified once
+            return;
+        }
+        long startNanos = PinViewMetrics.start();
+        int index = indexOfPinBox(s);
+        if (index != -1) {
+            mPinBuffer.setPinBox(index, s);
+            notifyPinViewChanged();
+        }
+        if (mHiddenInput != null) {
+            return;
         }
 
         if (count == 1 && s.length() == mNumberCharacters) {
-            if (currentFocus == (mNumberPinBoxes - 1) || currentFocus == 0) {
-                checkPinBoxesAvailableOrder();
-            } else {
-                checkPinBoxesAvailable();
-            }
-
+            checkPinBoxesAvailable();
+            PinViewMetrics.record(PinViewMetrics.KEYSTROKE, startNanos);
         }
     }
 
@@ -468,18 +1042,25 @@ abstract class PinViewBaseHelper extends LinearLayout implements TextWatcher, Vi
 
     void setImeVisibility(final boolean visible) {
         if (visible) {
+            if (mShowImeStart == 0) {
+                mShowImeStart = PinViewMetrics.start();
+            }
             post(mShowImeRunnable);
         } else {
             removeCallbacks(mShowImeRunnable);
+            mShowImeStart = 0;
             PinViewUtils.hideKeyboard(getContext());
         }
     }
 
     private final Runnable mShowImeRunnable = new Runnable() {
         public void run() {
-            if (findFocus() != null) {
-                inputMethodManager.showSoftInput(findFocus(), InputMethodManager.SHOW_FORCED);
+            View focus = findFocus();
+            if (focus != null) {
+                inputMethodManager.showSoftInput(focus, InputMethodManager.SHOW_FORCED);
             }
+            PinViewMetrics.record(PinViewMetrics.SHOW_IME, mShowImeStart);
+            mShowImeStart = 0;
         }
     };
 
@@ -488,4 +1069,8 @@ abstract class PinViewBaseHelper extends LinearLayout implements TextWatcher, Vi
     public abstract void setPin(int numberPinBoxes);
 
     protected abstract void notifyPinViewCompleted();
+
+    protected abstract void notifyPinViewChanged();
+
+    protected abstract void notifyPinViewNotCompleted();
 }
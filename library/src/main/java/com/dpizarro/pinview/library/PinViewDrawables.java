@@ -0,0 +1,128 @@
+package com.dpizarro.pinview.library;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.graphics.drawable.Drawable;
+import android.util.SparseArray;
+import android.widget.EditText;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * Cache of PinBox backgrounds, resolved once for each theme.
+ *
+ * Only the {@link Drawable.ConstantState} of each background is kept, every PinBox gets its own mutated copy so
+ * state changes of a PinBox don't affect the others. It must be used from the main thread.
+ */
+final class PinViewDrawables {
+
+    private static final int[] NATIVE_PIN_BOX_ATTRS = {android.R.attr.editTextBackground};
+
+    private static final Map<Resources.Theme, Backgrounds> sBackgrounds =
+            new WeakHashMap<Resources.Theme, Backgrounds>();
+
+    private PinViewDrawables() {
+    }
+
+    /**
+     * Get a new copy of the native background of an {@link EditText} for the theme of the context.
+     *
+     * @param context context of the PinBox
+     * @return new background or null if the theme doesn't have one
+     */
+    static Drawable getNativePinBox(Context context) {
+        Backgrounds backgrounds = getBackgrounds(context);
+        if (backgrounds.mNativePinBox == null) {
+            Drawable drawable = resolveNativePinBox(context);
+            if (drawable == null) {
+                return null;
+            }
+            backgrounds.mNativePinBox = drawable.getConstantState();
+            if (backgrounds.mNativePinBox == null) {
+                return drawable;
+            }
+        }
+        return backgrounds.mNativePinBox.newDrawable(context.getResources()).mutate();
+    }
+
+    /**
+     * Get a new copy of a custom PinBox background for the theme of the context.
+     *
+     * @param context context of the PinBox
+     * @param resId drawable resource of the background
+     * @return new background
+     */
+    static Drawable getCustomPinBox(Context context, int resId) {
+        Backgrounds backgrounds = getBackgrounds(context);
+        Drawable.ConstantState constantState = backgrounds.mCustomPinBoxes.get(resId);
+        if (constantState == null) {
+            //noinspection deprecation
+            Drawable drawable = context.getResources().getDrawable(resId);
+            if (drawable == null) {
+                return null;
+            }
+            constantState = drawable.getConstantState();
+            if (constantState == null) {
+                return drawable;
+            }
+            backgrounds.mCustomPinBoxes.put(resId, constantState);
+        }
+        return constantState.newDrawable(context.getResources()).mutate();
+    }
+
+    /**
+     * Drop every cached background
+     */
+    static void clear() {
+        sBackgrounds.clear();
+    }
+
+    private static Backgrounds getBackgrounds(Context context) {
+        Resources.Theme theme = context.getTheme();
+        Backgrounds backgrounds = sBackgrounds.get(theme);
+        if (backgrounds == null) {
+            backgrounds = new Backgrounds();
+            sBackgrounds.put(theme, backgrounds);
+        }
+        return backgrounds;
+    }
+
+    /**
+     * Read the background from the theme, creating an {@link EditText} only if the theme doesn't define it.
+     */
+    private static Drawable resolveNativePinBox(Context context) {
+        TypedArray typedArray = context.obtainStyledAttributes(NATIVE_PIN_BOX_ATTRS);
+        try {
+            Drawable drawable = typedArray.getDrawable(0);
+            if (drawable != null) {
+                return drawable;
+            }
+        } finally {
+            typedArray.recycle();
+        }
+        return new EditText(context).getBackground();
+    }
+
+    private static final class Backgrounds {
+
+        Drawable.ConstantState mNativePinBox;
+        final SparseArray<Drawable.ConstantState> mCustomPinBoxes = new SparseArray<Drawable.ConstantState>();
+    }
+}
@@ -0,0 +1,282 @@
+package com.dpizarro.pinview.library;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * Latency histograms of every {@link PinView} in the process. Disabled by default.
+ *
+ * Each event has a fixed set of buckets with exponential bounds, from 1 microsecond to about half a second, and
+ * a last one for longer durations, allocated once.
+ * Recording an event doesn't allocate, and when metrics are disabled it only reads a flag.
+ *
+ * Example:
+ *
+ *      PinViewMetrics.setEnabled(true);
+ *      ...
+ *      PinViewMetrics.Snapshot snapshot = PinViewMetrics.snapshot();
+ *      long p99 = snapshot.getPercentileNanos(PinViewMetrics.KEYSTROKE, 0.99);
+ *      PinViewMetrics.reset();
+ */
+public final class PinViewMetrics {
+
+    /**
+     * {@link PinView#setPin(int, int)}: PinBoxes and splits added, reused or removed
+     */
+    public static final int SET_PIN = 0;
+    /**
+     * Changed styles applied to every PinBox
+     */
+    public static final int RESTYLE = 1;
+    /**
+     * A PinBox changed, until the focus has moved to the next empty PinBox
+     */
+    public static final int KEYSTROKE = 2;
+    /**
+     * Keyboard requested, until it has been asked to the input method
+     */
+    public static final int SHOW_IME = 3;
+    /**
+     * {@link PinView#onSaveInstanceState()}
+     */
+    public static final int SAVE_STATE = 4;
+    /**
+     * {@link PinView#onRestoreInstanceState(android.os.Parcelable)}
+     */
+    public static final int RESTORE_STATE = 5;
+    /**
+     * {@link PinView} created from its attributes
+     */
+    public static final int CONSTRUCT = 6;
+    /**
+     * {@link PinView#setTitles(String[])}
+     */
+    public static final int SET_TITLES = 7;
+    /**
+     * {@link PinView#setSettings(PinViewSettings)}, including its setPin and setTitles
+     */
+    public static final int SET_SETTINGS = 8;
+
+    /**
+     * Number of events
+     */
+    public static final int EVENTS = 9;
+
+    private static final String[] EVENT_NAMES = {"set_pin", "restyle", "keystroke", "show_ime", "save_state",
+            "restore_state", "construct", "set_titles", "set_settings"};
+
+    /**
+     * Number of buckets of each event. Bucket i counts durations up to 2^i microseconds, the last one counts longer
+     * durations too.
+     */
+    public static final int BUCKETS = 21;
+
+    private static final int STATS = 3;
+    private static final int STAT_COUNT = 0;
+    private static final int STAT_TOTAL = 1;
+    private static final int STAT_MAX = 2;
+
+    private static volatile boolean sEnabled;
+    private static final AtomicLongArray sBuckets = new AtomicLongArray(EVENTS * BUCKETS);
+    private static final AtomicLongArray sStats = new AtomicLongArray(EVENTS * STATS);
+
+    private PinViewMetrics() {
+    }
+
+    /**
+     * Enable or disable recording. Recorded values are kept until {@link #reset()}.
+     *
+     * @param enabled true to record events
+     */
+    public static void setEnabled(boolean enabled) {
+        sEnabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    /**
+     * Start timing an event
+     *
+     * @return start time to pass to {@link #record(int, long)}, or 0 if metrics are disabled
+     */
+    static long start() {
+        return sEnabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Record an event started with {@link #start()}. Nothing is recorded if metrics were disabled when it started.
+     *
+     * @param event event, as {@link #SET_PIN}
+     * @param startNanos value returned by {@link #start()}
+     */
+    static void record(int event, long startNanos) {
+        if (startNanos == 0) {
+            return;
+        }
+        long nanos = Math.max(System.nanoTime() - startNanos, 0);
+        sBuckets.incrementAndGet(event * BUCKETS + getBucket(nanos));
+        int stats = event * STATS;
+        sStats.incrementAndGet(stats + STAT_COUNT);
+        sStats.addAndGet(stats + STAT_TOTAL, nanos);
+        long max = sStats.get(stats + STAT_MAX);
+        while (nanos > max && !sStats.compareAndSet(stats + STAT_MAX, max, nanos)) {
+            max = sStats.get(stats + STAT_MAX);
+        }
+    }
+
+    private static int getBucket(long nanos) {
+        long micros = (nanos + 999) / 1000;
+        if (micros <= 1) {
+            return 0;
+        }
+        int bucket = 64 - Long.numberOfLeadingZeros(micros - 1);
+        return Math.min(bucket, BUCKETS - 1);
+    }
+
+    /**
+     * @param event event, as {@link #SET_PIN}
+     * @return name of the event in {@link Snapshot#writeCsv(Appendable)}, as "set_pin"
+     */
+    public static String getEventName(int event) {
+        return EVENT_NAMES[event];
+    }
+
+    /**
+     * @param bucket bucket index, from 0 to {@link #BUCKETS} - 1
+     * @return upper bound of the bucket in nanoseconds, {@link Long#MAX_VALUE} for the last one
+     */
+    public static long getBucketUpperBoundNanos(int bucket) {
+        return bucket == BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket) * 1000;
+    }
+
+    /**
+     * Copy every recorded value. Events recorded meanwhile may be copied partially.
+     *
+     * @return copy of the histograms
+     */
+    public static Snapshot snapshot() {
+        long[] buckets = new long[EVENTS * BUCKETS];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = sBuckets.get(i);
+        }
+        long[] stats = new long[EVENTS * STATS];
+        for (int i = 0; i < stats.length; i++) {
+            stats[i] = sStats.get(i);
+        }
+        return new Snapshot(buckets, stats);
+    }
+
+    /**
+     * Clear every recorded value
+     */
+    public static void reset() {
+        for (int i = 0; i < EVENTS * BUCKETS; i++) {
+            sBuckets.set(i, 0);
+        }
+        for (int i = 0; i < EVENTS * STATS; i++) {
+            sStats.set(i, 0);
+        }
+    }
+
+    /**
+     * Recorded values at the time of {@link PinViewMetrics#snapshot()}.
+     */
+    public static final class Snapshot {
+
+        private final long[] mBuckets;
+        private final long[] mStats;
+
+        Snapshot(long[] buckets, long[] stats) {
+            mBuckets = buckets;
+            mStats = stats;
+        }
+
+        public long getCount(int event) {
+            return mStats[event * STATS + STAT_COUNT];
+        }
+
+        public long getTotalNanos(int event) {
+            return mStats[event * STATS + STAT_TOTAL];
+        }
+
+        public long getMaxNanos(int event) {
+            return mStats[event * STATS + STAT_MAX];
+        }
+
+        /**
+         * @param event event, as {@link #SET_PIN}
+         * @param bucket bucket index, see {@link PinViewMetrics#getBucketUpperBoundNanos(int)}
+         * @return number of events in the bucket
+         */
+        public long getBucketCount(int event, int bucket) {
+            return mBuckets[event * BUCKETS + bucket];
+        }
+
+        /**
+         * @param event event, as {@link #SET_PIN}
+         * @param percentile percentile between 0 and 1, as 0.99
+         * @return upper bound of the bucket with the percentile, limited to the maximum recorded duration, or 0
+         * if there are no events
+         */
+        public long getPercentileNanos(int event, double percentile) {
+            long count = getCount(event);
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max((long) Math.ceil(percentile * count), 1);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += getBucketCount(event, i);
+                if (seen >= rank) {
+                    return Math.min(getBucketUpperBoundNanos(i), getMaxNanos(event));
+                }
+            }
+            return getMaxNanos(event);
+        }
+
+        /**
+         * Write every event as CSV, one line per event after a header, so results can be compared between releases:
+         * event,count,total_ns,max_ns,p50_ns,p90_ns,p99_ns followed by the count of each bucket.
+         *
+         * @param out destination of the CSV
+         * @throws IOException if out can't be written
+         */
+        public void writeCsv(Appendable out) throws IOException {
+            out.append("event,count,total_ns,max_ns,p50_ns,p90_ns,p99_ns");
+            for (int i = 0; i < BUCKETS; i++) {
+                out.append(",le_").append(i == BUCKETS - 1 ? "inf" : String.valueOf(getBucketUpperBoundNanos(i)));
+            }
+            out.append('\n');
+            for (int event = 0; event < EVENTS; event++) {
+                out.append(getEventName(event))
+                        .append(',').append(String.valueOf(getCount(event)))
+                        .append(',').append(String.valueOf(getTotalNanos(event)))
+                        .append(',').append(String.valueOf(getMaxNanos(event)))
+                        .append(',').append(String.valueOf(getPercentileNanos(event, 0.5)))
+                        .append(',').append(String.valueOf(getPercentileNanos(event, 0.9)))
+                        .append(',').append(String.valueOf(getPercentileNanos(event, 0.99)));
+                for (int i = 0; i < BUCKETS; i++) {
+                    out.append(',').append(String.valueOf(getBucketCount(event, i)));
+                }
+                out.append('\n');
+            }
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package com.dpizarro.pinview.library;
+
+import android.annotation.TargetApi;
+import android.app.Activity;
+import android.app.Application;
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.content.res.Resources;
+import android.os.Build;
+import android.os.Bundle;
+import android.text.InputFilter;
+import android.text.InputType;
+import android.text.TextWatcher;
+import android.widget.EditText;
+import android.widget.TextView;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * Optional process-wide pool of PinBoxes {@link EditText}, splits and titles {@link TextView}.
+ *
+ * When it's enabled, every {@link PinView} which is rebuilt or detached from its window returns its children to the
+ * pool, and new PinBoxes, splits and titles are taken from it before inflating new ones. Children are kept by the
+ * theme of their context, so they are only reused inside the same Activity, and they are dropped as soon as that
+ * Activity is finishing, changing its configuration or destroyed.
+ *
+ * Pooled children hold their Activity, so a pool can't rely on the weak key of its theme alone: the Activity is only
+ * kept through a {@link WeakReference} and, from API 14, its pool is dropped when it's destroyed.
+ *
+ * Example:
+ *
+ *      PinViewPool.setEnabled(true);
+ *      PinViewPool.setMaxPoolSize(8);
+ *      ...
+ *      Log.d(TAG, "hits: " + PinViewPool.getHitCount() + ", misses: " + PinViewPool.getMissCount());
+ *
+ * The pool must be used from the main thread.
+ */
+public final class PinViewPool {
+
+    /**
+     * Default number of children of each type kept for a theme
+     */
+    public static final int DEFAULT_MAX_POOL_SIZE = 16;
+
+    /**
+     * Input type of a PinBox {@link EditText} inflated from the library layout
+     */
+    static final int DEFAULT_PIN_BOX_INPUT_TYPE = InputType.TYPE_CLASS_NUMBER
+            | InputType.TYPE_NUMBER_VARIATION_PASSWORD;
+
+    private static final InputFilter[] NO_FILTERS = new InputFilter[0];
+
+    private static final Map<Resources.Theme, Pool> sPools = new WeakHashMap<Resources.Theme, Pool>();
+    private static boolean sEnabled = false;
+    private static int sMaxPoolSize = DEFAULT_MAX_POOL_SIZE;
+    private static int sHitCount;
+    private static int sMissCount;
+    private static boolean sLifecycleCallbacksRegistered;
+
+    private PinViewPool() {
+    }
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    /**
+     * Enable or disable the pool. Disabling it drops every pooled child.
+     *
+     * @param enabled true to reuse PinBoxes, splits and titles between {@link PinView}s
+     */
+    public static void setEnabled(boolean enabled) {
+        sEnabled = enabled;
+        if (!enabled) {
+            clear();
+        }
+    }
+
+    public static int getMaxPoolSize() {
+        return sMaxPoolSize;
+    }
+
+    /**
+     * Set the number of children of each type (PinBoxes, splits and titles) kept for a theme.
+     *
+     * @param maxPoolSize maximum number of pooled children of each type
+     */
+    public static void setMaxPoolSize(int maxPoolSize) {
+        if (maxPoolSize >= 0) {
+            sMaxPoolSize = maxPoolSize;
+        }
+    }
+
+    /**
+     * @return number of children taken from the pool
+     */
+    public static int getHitCount() {
+        return sHitCount;
+    }
+
+    /**
+     * @return number of children which had to be created because the pool had none of them
+     */
+    public static int getMissCount() {
+        return sMissCount;
+    }
+
+    /**
+     * @return number of children currently kept by the pool, of every type and theme
+     */
+    public static int getPooledCount() {
+        int count = 0;
+        for (Pool pool : sPools.values()) {
+            count += pool.mPinBoxes.size() + pool.mSplits.size() + pool.mTitles.size();
+        }
+        return count;
+    }
+
+    /**
+     * Reset hit and miss counters
+     */
+    public static void resetCounters() {
+        sHitCount = 0;
+        sMissCount = 0;
+    }
+
+    /**
+     * Drop every pooled child
+     */
+    public static void clear() {
+        sPools.clear();
+    }
+
+    static EditText obtainPinBox(Context context) {
+        Pool pool = getPool(context, false);
+        return count(pool != null ? pool.mPinBoxes.poll() : null);
+    }
+
+    static TextView obtainSplit(Context context) {
+        Pool pool = getPool(context, false);
+        return count(pool != null ? pool.mSplits.poll() : null);
+    }
+
+    static TextView obtainTitle(Context context) {
+        Pool pool = getPool(context, false);
+        return count(pool != null ? pool.mTitles.poll() : null);
+    }
+
+    /**
+     * Return a PinBox to the pool, without listeners, filters, transformation and value.
+     *
+     * @param pinBox PinBox {@link EditText} already removed from its parent
+     * @param watcher {@link TextWatcher} added by its {@link PinView}
+     */
+    static void recyclePinBox(EditText pinBox, TextWatcher watcher) {
+        Pool pool = getPool(pinBox.getContext(), true);
+        if (pool != null && pool.mPinBoxes.size() < sMaxPoolSize) {
+            pinBox.removeTextChangedListener(watcher);
+            pinBox.setOnFocusChangeListener(null);
+            pinBox.setFocusable(true);
+            pinBox.setFocusableInTouchMode(true);
+            pinBox.setCursorVisible(true);
+            pinBox.setFilters(NO_FILTERS);
+            pinBox.setInputType(DEFAULT_PIN_BOX_INPUT_TYPE);
+            pinBox.setTransformationMethod(null);
+            pinBox.setError(null);
+            pinBox.getText().clear();
+            pinBox.setTag(null);
+            pinBox.setTag(R.id.pin_box_index, null);
+            pool.mPinBoxes.add(pinBox);
+        }
+    }
+
+    static void recycleSplit(TextView split) {
+        Pool pool = getPool(split.getContext(), true);
+        if (pool != null && pool.mSplits.size() < sMaxPoolSize) {
+            split.setText(null);
+            pool.mSplits.add(split);
+        }
+    }
+
+    static void recycleTitle(TextView title) {
+        Pool pool = getPool(title.getContext(), true);
+        if (pool != null && pool.mTitles.size() < sMaxPoolSize) {
+            title.setText(null);
+            pool.mTitles.add(title);
+        }
+    }
+
+    private static <T extends TextView> T count(T view) {
+        if (sEnabled) {
+            if (view != null) {
+                sHitCount++;
+            } else {
+                sMissCount++;
+            }
+        }
+        return view;
+    }
+
+    /**
+     * Get the pool of a theme, dropping the ones whose Activity is going away so they are not leaked.
+     *
+     * @param context context of the children
+     * @param create true to create the pool if it doesn't exist
+     * @return pool of the theme or null if the pool is disabled or the context can't keep children
+     */
+    private static Pool getPool(Context context, boolean create) {
+        if (!sEnabled) {
+            return null;
+        }
+
+        Iterator<Pool> iterator = sPools.values().iterator();
+        while (iterator.hasNext()) {
+            if (!canRecycle(iterator.next().mContext)) {
+                iterator.remove();
+            }
+        }
+
+        if (!canRecycle(context)) {
+            return null;
+        }
+        Resources.Theme theme = context.getTheme();
+        Pool pool = sPools.get(theme);
+        if (pool == null && create) {
+            pool = new Pool(context);
+            sPools.put(theme, pool);
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+                registerLifecycleCallbacks(context);
+            }
+        }
+        return pool;
+    }
+
+    private static boolean canRecycle(WeakReference<Context> context) {
+        Context referent = context.get();
+        return referent != null && canRecycle(referent);
+    }
+
+    private static boolean canRecycle(Context context) {
+        Activity activity = getActivity(context);
+        if (activity != null) {
+            return !activity.isFinishing() && !activity.isChangingConfigurations();
+        }
+        return true;
+    }
+
+    private static Activity getActivity(Context context) {
+        while (context instanceof ContextWrapper && !(context instanceof Activity)) {
+            context = ((ContextWrapper) context).getBaseContext();
+        }
+        return context instanceof Activity ? (Activity) context : null;
+    }
+
+    /**
+     * Drop the pools of an Activity as soon as it's destroyed, even if no other child is pooled afterwards
+     */
+    @TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH)
+    private static void registerLifecycleCallbacks(Context context) {
+        if (sLifecycleCallbacksRegistered || !(context.getApplicationContext() instanceof Application)) {
+            return;
+        }
+        sLifecycleCallbacksRegistered = true;
+        ((Application) context.getApplicationContext()).registerActivityLifecycleCallbacks(
+                new Application.ActivityLifecycleCallbacks() {
+                    @Override
+                    public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+                    }
+
+                    @Override
+                    public void onActivityStarted(Activity activity) {
+                    }
+
+                    @Override
+                    public void onActivityResumed(Activity activity) {
+                    }
+
+                    @Override
+                    public void onActivityPaused(Activity activity) {
+                    }
+
+                    @Override
+                    public void onActivityStopped(Activity activity) {
+                    }
+
+                    @Override
+                    public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+                    }
+
+                    @Override
+                    public void onActivityDestroyed(Activity activity) {
+                        Iterator<Pool> iterator = sPools.values().iterator();
+                        while (iterator.hasNext()) {
+                            Context context = iterator.next().mContext.get();
+                            if (context == null || getActivity(context) == activity) {
+                                iterator.remove();
+                            }
+                        }
+                    }
+                });
+    }
+
+    private static final class Pool {
+
+        final WeakReference<Context> mContext;
+        final ArrayDeque<EditText> mPinBoxes = new ArrayDeque<EditText>();
+        final ArrayDeque<TextView> mSplits = new ArrayDeque<TextView>();
+        final ArrayDeque<TextView> mTitles = new ArrayDeque<TextView>();
+
+        Pool(Context context) {
+            mContext = new WeakReference<Context>(context);
+        }
+    }
+}
@@ -2,8 +2,14 @@ package com.dpizarro.pinview.library;
 
 import android.os.Parcel;
 import android.os.Parcelable;
+import android.text.TextUtils;
 import android.widget.EditText;
 
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+
 /*
  * Copyright (C) 2015 David Pizarro
  *
@@ -19,7 +25,14 @@ import android.widget.EditText;
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-public class PinViewSettings implements Parcelable {
+/**
+ * Immutable settings of a {@link PinView}, see {@link PinView#setSettings(PinViewSettings)}.
+ *
+ * Settings built with {@link Builder} or read from a {@link Parcel} are interned: equal settings are the same
+ * instance while any of them is in use, so they are shared between every {@link PinView} and compared by reference
+ * first.
+ */
+public final class PinViewSettings implements Parcelable {
 
     /**
      * Default number of boxes in a simple {@link PinView}. See {@link PinView#mNumberPinBoxes}
@@ -57,6 +70,16 @@ public class PinViewSettings implements Parcelable {
      */
     public static final boolean DEFAULT_NATIVE_PIN_BOX = false;
 
+    /**
+     * Default rendering of {@link PinView}, one view per box, split and title. See {@link PinView#mCanvasMode}
+     */
+    public static final boolean DEFAULT_CANVAS_MODE = false;
+
+    /**
+     * Default input of {@link PinView}, the focus moves from PinBox to PinBox. See {@link PinView#mSingleInput}
+     */
+    public static final boolean DEFAULT_SINGLE_INPUT = false;
+
     /**
      * Custom style to Pin boxes. See {@link PinView#mCustomDrawablePinBox}
      */
@@ -92,6 +115,44 @@ public class PinViewSettings implements Parcelable {
      */
     public static final int DEFAULT_SIZE_SPLIT = R.dimen.pin_size;
 
+    /**
+     * Parcel flags: every boolean is packed in the same int, next to the presence of the fields with a default value
+     */
+    private static final int FLAG_KEYBOARD_MANDATORY = 1;
+    private static final int FLAG_MASK_PASSWORD = 1 << 1;
+    private static final int FLAG_DELETE_ON_CLICK = 1 << 2;
+    private static final int FLAG_NATIVE_PIN_BOX = 1 << 3;
+    private static final int FLAG_CANVAS_MODE = 1 << 4;
+    private static final int FLAG_SINGLE_INPUT = 1 << 5;
+    private static final int FLAG_HAS_PIN_TITLES = 1 << 8;
+    private static final int FLAG_HAS_NUMBER_PIN_BOXES = 1 << 9;
+    private static final int FLAG_HAS_NUMBER_CHARACTERS = 1 << 10;
+    static final int FLAG_HAS_SPLIT = 1 << 11;
+    private static final int FLAG_HAS_CUSTOM_PIN_BOX = 1 << 12;
+    private static final int FLAG_NULL_SPLIT = 1 << 13;
+
+    /**
+     * Fields of {@link #diff(PinViewSettings)}
+     */
+    static final int FIELD_PIN_TITLES = 1;
+    static final int FIELD_KEYBOARD_MANDATORY = 1 << 1;
+    static final int FIELD_NUMBER_PIN_BOXES = 1 << 2;
+    static final int FIELD_MASK_PASSWORD = 1 << 3;
+    static final int FIELD_NUMBER_CHARACTERS = 1 << 4;
+    static final int FIELD_SPLIT = 1 << 5;
+    static final int FIELD_DELETE_ON_CLICK = 1 << 6;
+    static final int FIELD_NATIVE_PIN_BOX = 1 << 7;
+    static final int FIELD_CANVAS_MODE = 1 << 8;
+    static final int FIELD_SINGLE_INPUT = 1 << 9;
+    static final int FIELD_CUSTOM_PIN_BOX = 1 << 10;
+    static final int FIELD_COLOR_TEXT_PIN_BOX = 1 << 11;
+    static final int FIELD_COLOR_TEXT_TITLES = 1 << 12;
+    static final int FIELD_COLOR_SPLIT = 1 << 13;
+    static final int FIELD_TEXT_SIZE_PIN_BOX = 1 << 14;
+    static final int FIELD_TEXT_SIZE_TITLES = 1 << 15;
+    static final int FIELD_SIZE_SPLIT = 1 << 16;
+    static final int FIELD_ALL = (1 << 17) - 1;
+
     private final String[] mPinTitles;
     private final boolean mKeyboardMandatory;
     private final int mNumberPinBoxes;
@@ -100,6 +161,8 @@ public class PinViewSettings implements Parcelable {
     private final String mSplit;
     private final boolean mDeleteOnClick;
     private final boolean mNativePinBox;
+    private final boolean mCanvasMode;
+    private final boolean mSingleInput;
     private final int mCustomDrawablePinBox;
     private final int mColorTextPinBox;
     private final int mColorTextTitles;
@@ -107,10 +170,14 @@ public class PinViewSettings implements Parcelable {
     private final float mTextSizePinBox;
     private final float mTextSizeTitles;
     private final float mSizeSplit;
+    private final int mHashCode;
+
+    private static final Map<PinViewSettings, WeakReference<PinViewSettings>> sInterned =
+            new WeakHashMap<PinViewSettings, WeakReference<PinViewSettings>>();
 
 
     private PinViewSettings(Builder builder) {
-        mPinTitles = builder.mPinTitles;
+        mPinTitles = builder.mPinTitles != null ? builder.mPinTitles.clone() : null;
         mKeyboardMandatory = builder.mKeyboardMandatory;
         mNumberPinBoxes = builder.mNumberPinBoxes;
         mMaskPassword = builder.mMaskPassword;
@@ -118,6 +185,8 @@ public class PinViewSettings implements Parcelable {
         mSplit = builder.mSplit;
         mDeleteOnClick = builder.mDeleteOnClick;
         mNativePinBox = builder.mNativePinBox;
+        mCanvasMode = builder.mCanvasMode;
+        mSingleInput = builder.mSingleInput;
         mCustomDrawablePinBox = builder.mCustomDrawablePinBox;
         mColorTextPinBox = builder.mColorTextPinBox;
         mColorTextTitles = builder.mColorTextTitles;
@@ -125,10 +194,31 @@ public class PinViewSettings implements Parcelable {
         mTextSizePinBox = builder.mTextSizePinBox;
         mTextSizeTitles = builder.mTextSizeTitles;
         mSizeSplit = builder.mSizeSplit;
+        mHashCode = computeHashCode();
+    }
+
+    /**
+     * Get the shared instance equal to these settings
+     *
+     * @return settings equal to these ones, this instance if there wasn't any other
+     */
+    public PinViewSettings intern() {
+        synchronized (sInterned) {
+            WeakReference<PinViewSettings> reference = sInterned.get(this);
+            PinViewSettings interned = reference != null ? reference.get() : null;
+            if (interned != null) {
+                return interned;
+            }
+            sInterned.put(this, new WeakReference<PinViewSettings>(this));
+            return this;
+        }
     }
 
+    /**
+     * @return copy of the titles, or null if there aren't titles
+     */
     public String[] getPinTitles() {
-        return mPinTitles;
+        return mPinTitles != null ? mPinTitles.clone() : null;
     }
 
     public boolean isKeyboardMandatory() {
@@ -159,6 +249,14 @@ public class PinViewSettings implements Parcelable {
         return mNativePinBox;
     }
 
+    public boolean isCanvasMode() {
+        return mCanvasMode;
+    }
+
+    public boolean isSingleInput() {
+        return mSingleInput;
+    }
+
     public int getCustomDrawablePinBox() {
         return mCustomDrawablePinBox;
     }
@@ -187,6 +285,79 @@ public class PinViewSettings implements Parcelable {
         return mSizeSplit;
     }
 
+    /**
+     * Compare every field with other settings
+     *
+     * @param other settings to compare, or null
+     * @return bitmask of the fields with a different value, as {@link #FIELD_PIN_TITLES}, or {@link #FIELD_ALL}
+     * if other is null
+     */
+    int diff(PinViewSettings other) {
+        if (other == null) {
+            return FIELD_ALL;
+        }
+        if (other == this) {
+            return 0;
+        }
+        int fields = 0;
+        fields |= Arrays.equals(mPinTitles, other.mPinTitles) ? 0 : FIELD_PIN_TITLES;
+        fields |= mKeyboardMandatory == other.mKeyboardMandatory ? 0 : FIELD_KEYBOARD_MANDATORY;
+        fields |= mNumberPinBoxes == other.mNumberPinBoxes ? 0 : FIELD_NUMBER_PIN_BOXES;
+        fields |= mMaskPassword == other.mMaskPassword ? 0 : FIELD_MASK_PASSWORD;
+        fields |= mNumberCharacters == other.mNumberCharacters ? 0 : FIELD_NUMBER_CHARACTERS;
+        fields |= TextUtils.equals(mSplit, other.mSplit) ? 0 : FIELD_SPLIT;
+        fields |= mDeleteOnClick == other.mDeleteOnClick ? 0 : FIELD_DELETE_ON_CLICK;
+        fields |= mNativePinBox == other.mNativePinBox ? 0 : FIELD_NATIVE_PIN_BOX;
+        fields |= mCanvasMode == other.mCanvasMode ? 0 : FIELD_CANVAS_MODE;
+        fields |= mSingleInput == other.mSingleInput ? 0 : FIELD_SINGLE_INPUT;
+        fields |= mCustomDrawablePinBox == other.mCustomDrawablePinBox ? 0 : FIELD_CUSTOM_PIN_BOX;
+        fields |= mColorTextPinBox == other.mColorTextPinBox ? 0 : FIELD_COLOR_TEXT_PIN_BOX;
+        fields |= mColorTextTitles == other.mColorTextTitles ? 0 : FIELD_COLOR_TEXT_TITLES;
+        fields |= mColorSplit == other.mColorSplit ? 0 : FIELD_COLOR_SPLIT;
+        fields |= Float.compare(mTextSizePinBox, other.mTextSizePinBox) == 0 ? 0 : FIELD_TEXT_SIZE_PIN_BOX;
+        fields |= Float.compare(mTextSizeTitles, other.mTextSizeTitles) == 0 ? 0 : FIELD_TEXT_SIZE_TITLES;
+        fields |= Float.compare(mSizeSplit, other.mSizeSplit) == 0 ? 0 : FIELD_SIZE_SPLIT;
+        return fields;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PinViewSettings)) {
+            return false;
+        }
+        PinViewSettings settings = (PinViewSettings) o;
+        return mHashCode == settings.mHashCode && diff(settings) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return mHashCode;
+    }
+
+    private int computeHashCode() {
+        int hashCode = Arrays.hashCode(mPinTitles);
+        hashCode = 31 * hashCode + (mKeyboardMandatory ? 1 : 0);
+        hashCode = 31 * hashCode + mNumberPinBoxes;
+        hashCode = 31 * hashCode + (mMaskPassword ? 1 : 0);
+        hashCode = 31 * hashCode + mNumberCharacters;
+        hashCode = 31 * hashCode + (mSplit != null ? mSplit.hashCode() : 0);
+        hashCode = 31 * hashCode + (mDeleteOnClick ? 1 : 0);
+        hashCode = 31 * hashCode + (mNativePinBox ? 1 : 0);
+        hashCode = 31 * hashCode + (mCanvasMode ? 1 : 0);
+        hashCode = 31 * hashCode + (mSingleInput ? 1 : 0);
+        hashCode = 31 * hashCode + mCustomDrawablePinBox;
+        hashCode = 31 * hashCode + mColorTextPinBox;
+        hashCode = 31 * hashCode + mColorTextTitles;
+        hashCode = 31 * hashCode + mColorSplit;
+        hashCode = 31 * hashCode + Float.floatToIntBits(mTextSizePinBox);
+        hashCode = 31 * hashCode + Float.floatToIntBits(mTextSizeTitles);
+        hashCode = 31 * hashCode + Float.floatToIntBits(mSizeSplit);
+        return hashCode;
+    }
+
 
     public static final class Builder {
 
@@ -198,6 +369,8 @@ public class PinViewSettings implements Parcelable {
         private String mSplit;
         private boolean mDeleteOnClick;
         private boolean mNativePinBox;
+        private boolean mCanvasMode;
+        private boolean mSingleInput;
         private int mCustomDrawablePinBox;
         private int mColorTextPinBox;
         private int mColorTextTitles;
@@ -249,6 +422,16 @@ public class PinViewSettings implements Parcelable {
             return this;
         }
 
+        public Builder withCanvasMode(boolean mCanvasMode) {
+            this.mCanvasMode = mCanvasMode;
+            return this;
+        }
+
+        public Builder withSingleInput(boolean mSingleInput) {
+            this.mSingleInput = mSingleInput;
+            return this;
+        }
+
         public Builder withCustomDrawablePinBox(int mCustomDrawablePinBox) {
             this.mCustomDrawablePinBox = mCustomDrawablePinBox;
             return this;
@@ -284,8 +467,11 @@ public class PinViewSettings implements Parcelable {
             return this;
         }
 
+        /**
+         * @return interned settings, see {@link PinViewSettings#intern()}
+         */
         public PinViewSettings build() {
-            return new PinViewSettings(this);
+            return new PinViewSettings(this).intern();
         }
     }
 
@@ -294,17 +480,44 @@ public class PinViewSettings implements Parcelable {
         return 0;
     }
 
+    /**
+     * Booleans are written as a single int of flags, which also tells which of the fields with a default value are
+     * written: titles, number of PinBoxes, number of characters, split and custom PinBox are omitted when they have
+     * their default value. A null split is only a flag too. Colors and sizes are resolved values without a default, so
+     * they are always written.
+     */
     @Override
     public void writeToParcel(Parcel dest, int flags) {
-        dest.writeStringArray(this.mPinTitles);
-        dest.writeByte(mKeyboardMandatory ? (byte) 1 : (byte) 0);
-        dest.writeInt(this.mNumberPinBoxes);
-        dest.writeByte(mMaskPassword ? (byte) 1 : (byte) 0);
-        dest.writeInt(this.mNumberCharacters);
-        dest.writeString(this.mSplit);
-        dest.writeByte(mDeleteOnClick ? (byte) 1 : (byte) 0);
-        dest.writeByte(mNativePinBox ? (byte) 1 : (byte) 0);
-        dest.writeInt(this.mCustomDrawablePinBox);
+        int parcelFlags = 0;
+        parcelFlags |= mKeyboardMandatory ? FLAG_KEYBOARD_MANDATORY : 0;
+        parcelFlags |= mMaskPassword ? FLAG_MASK_PASSWORD : 0;
+        parcelFlags |= mDeleteOnClick ? FLAG_DELETE_ON_CLICK : 0;
+        parcelFlags |= mNativePinBox ? FLAG_NATIVE_PIN_BOX : 0;
+        parcelFlags |= mCanvasMode ? FLAG_CANVAS_MODE : 0;
+        parcelFlags |= mSingleInput ? FLAG_SINGLE_INPUT : 0;
+        parcelFlags |= mPinTitles != null ? FLAG_HAS_PIN_TITLES : 0;
+        parcelFlags |= mNumberPinBoxes != DEFAULT_NUMBER_PIN_BOXES ? FLAG_HAS_NUMBER_PIN_BOXES : 0;
+        parcelFlags |= mNumberCharacters != DEFAULT_NUMBER_CHARACTERS ? FLAG_HAS_NUMBER_CHARACTERS : 0;
+        parcelFlags |= mSplit == null ? FLAG_NULL_SPLIT : 0;
+        parcelFlags |= mSplit != null && !DEFAULT_SPLIT.equals(mSplit) ? FLAG_HAS_SPLIT : 0;
+        parcelFlags |= mCustomDrawablePinBox != DEFAULT_CUSTOM_PIN_BOX ? FLAG_HAS_CUSTOM_PIN_BOX : 0;
+        dest.writeInt(parcelFlags);
+
+        if ((parcelFlags & FLAG_HAS_PIN_TITLES) != 0) {
+            dest.writeStringArray(this.mPinTitles);
+        }
+        if ((parcelFlags & FLAG_HAS_NUMBER_PIN_BOXES) != 0) {
+            dest.writeInt(this.mNumberPinBoxes);
+        }
+        if ((parcelFlags & FLAG_HAS_NUMBER_CHARACTERS) != 0) {
+            dest.writeInt(this.mNumberCharacters);
+        }
+        if ((parcelFlags & FLAG_HAS_SPLIT) != 0) {
+            dest.writeString(this.mSplit);
+        }
+        if ((parcelFlags & FLAG_HAS_CUSTOM_PIN_BOX) != 0) {
+            dest.writeInt(this.mCustomDrawablePinBox);
+        }
         dest.writeInt(this.mColorTextPinBox);
         dest.writeInt(this.mColorTextTitles);
         dest.writeInt(this.mColorSplit);
@@ -313,27 +526,35 @@ public class PinViewSettings implements Parcelable {
         dest.writeFloat(this.mSizeSplit);
     }
 
-    protected PinViewSettings(Parcel in) {
-        this.mPinTitles = in.createStringArray();
-        this.mKeyboardMandatory = in.readByte() != 0;
-        this.mNumberPinBoxes = in.readInt();
-        this.mMaskPassword = in.readByte() != 0;
-        this.mNumberCharacters = in.readInt();
-        this.mSplit = in.readString();
-        this.mDeleteOnClick = in.readByte() != 0;
-        this.mNativePinBox = in.readByte() != 0;
-        this.mCustomDrawablePinBox = in.readInt();
+    private PinViewSettings(Parcel in) {
+        int parcelFlags = in.readInt();
+        this.mKeyboardMandatory = (parcelFlags & FLAG_KEYBOARD_MANDATORY) != 0;
+        this.mMaskPassword = (parcelFlags & FLAG_MASK_PASSWORD) != 0;
+        this.mDeleteOnClick = (parcelFlags & FLAG_DELETE_ON_CLICK) != 0;
+        this.mNativePinBox = (parcelFlags & FLAG_NATIVE_PIN_BOX) != 0;
+        this.mCanvasMode = (parcelFlags & FLAG_CANVAS_MODE) != 0;
+        this.mSingleInput = (parcelFlags & FLAG_SINGLE_INPUT) != 0;
+        this.mPinTitles = (parcelFlags & FLAG_HAS_PIN_TITLES) != 0 ? in.createStringArray() : null;
+        this.mNumberPinBoxes = (parcelFlags & FLAG_HAS_NUMBER_PIN_BOXES) != 0 ? in.readInt()
+                : DEFAULT_NUMBER_PIN_BOXES;
+        this.mNumberCharacters = (parcelFlags & FLAG_HAS_NUMBER_CHARACTERS) != 0 ? in.readInt()
+                : DEFAULT_NUMBER_CHARACTERS;
+        this.mSplit = (parcelFlags & FLAG_NULL_SPLIT) != 0 ? null
+                : (parcelFlags & FLAG_HAS_SPLIT) != 0 ? in.readString() : DEFAULT_SPLIT;
+        this.mCustomDrawablePinBox = (parcelFlags & FLAG_HAS_CUSTOM_PIN_BOX) != 0 ? in.readInt()
+                : DEFAULT_CUSTOM_PIN_BOX;
         this.mColorTextPinBox = in.readInt();
         this.mColorTextTitles = in.readInt();
         this.mColorSplit = in.readInt();
         this.mTextSizePinBox = in.readFloat();
         this.mTextSizeTitles = in.readFloat();
         this.mSizeSplit = in.readFloat();
+        this.mHashCode = computeHashCode();
     }
 
     public static final Creator<PinViewSettings> CREATOR = new Creator<PinViewSettings>() {
         public PinViewSettings createFromParcel(Parcel source) {
-            return new PinViewSettings(source);
+            return new PinViewSettings(source).intern();
         }
 
         public PinViewSettings[] newArray(int size) {
@@ -0,0 +1,216 @@
+package com.dpizarro.pinview.library;
+
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.util.DisplayMetrics;
+import android.util.SparseIntArray;
+import android.util.TypedValue;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * Process-wide cache of resolved colors and text sizes, so {@link PinView}s with the same settings don't resolve
+ * resources again. Values are kept for each {@link Configuration}, as colors and sizes depend on it.
+ *
+ * It must be used from the main thread.
+ */
+final class PinViewStyleCache {
+
+    private static final int MAX_STYLES = 32;
+    private static final int MAX_CONFIGURATIONS = 4;
+
+    private static final Map<Configuration, SparseIntArray> sColors = new HashMap<Configuration, SparseIntArray>();
+    private static final Map<StyleKey, ResolvedStyle> sStyles = new LinkedHashMap<StyleKey, ResolvedStyle>(
+            MAX_STYLES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<StyleKey, ResolvedStyle> eldest) {
+            return size() > MAX_STYLES;
+        }
+    };
+
+    private PinViewStyleCache() {
+    }
+
+    /**
+     * Resolve a color which can be a color resource or an ARGB color, as the color setters of {@link PinView} accept.
+     * Each value is resolved once for each configuration.
+     *
+     * @param resources resources to resolve the color
+     * @param color color resource or ARGB color
+     * @return ARGB color
+     */
+    static int resolveColor(Resources resources, int color) {
+        Configuration configuration = resources.getConfiguration();
+        SparseIntArray colors = sColors.get(configuration);
+        if (colors == null) {
+            if (sColors.size() >= MAX_CONFIGURATIONS) {
+                sColors.clear();
+            }
+            colors = new SparseIntArray();
+            sColors.put(new Configuration(configuration), colors);
+        }
+
+        int index = colors.indexOfKey(color);
+        if (index >= 0) {
+            return colors.valueAt(index);
+        }
+        int resolved;
+        try {
+            //noinspection deprecation
+            resolved = resources.getColor(color);
+        } catch (Resources.NotFoundException e) {
+            resolved = color;
+        }
+        colors.put(color, resolved);
+        return resolved;
+    }
+
+    /**
+     * Get the resolved style for a set of ARGB colors and sizes in pixels.
+     *
+     * @param resources resources of the {@link PinView}
+     * @return resolved style, shared between every {@link PinView} with the same values and configuration
+     */
+    static ResolvedStyle getStyle(Resources resources, int colorTextPinBoxes, int colorTextTitles, int colorSplit,
+                                  float textSizePinBoxes, float textSizeTitles, float sizeSplit) {
+        StyleKey key = new StyleKey(resources.getConfiguration(), colorTextPinBoxes, colorTextTitles, colorSplit,
+                textSizePinBoxes, textSizeTitles, sizeSplit);
+        ResolvedStyle style = sStyles.get(key);
+        if (style == null) {
+            style = new ResolvedStyle(resources.getDisplayMetrics(), colorTextPinBoxes, colorTextTitles, colorSplit,
+                    textSizePinBoxes, textSizeTitles, sizeSplit);
+            key.mConfiguration = new Configuration(key.mConfiguration);
+            sStyles.put(key, style);
+        }
+        return style;
+    }
+
+    /**
+     * Drop every resolved color and style
+     */
+    static void clear() {
+        sColors.clear();
+        sStyles.clear();
+    }
+
+    /**
+     * Colors and text sizes ready to be set to PinBoxes, titles and splits.
+     */
+    static final class ResolvedStyle {
+
+        final int mColorTextPinBoxes;
+        final int mColorTextTitles;
+        final int mColorSplit;
+
+        /**
+         * Sizes for {@link android.widget.TextView#setTextSize(float)}
+         */
+        final float mTextSizePinBoxes;
+        final float mTextSizeTitles;
+        final float mSizeSplit;
+
+        /**
+         * Sizes in pixels for {@link android.graphics.Paint#setTextSize(float)}, equivalent to the previous ones
+         */
+        final float mPaintTextSizePinBoxes;
+        final float mPaintTextSizeTitles;
+        final float mPaintSizeSplit;
+
+        ResolvedStyle(DisplayMetrics metrics, int colorTextPinBoxes, int colorTextTitles, int colorSplit,
+                      float textSizePinBoxes, float textSizeTitles, float sizeSplit) {
+            mColorTextPinBoxes = colorTextPinBoxes;
+            mColorTextTitles = colorTextTitles;
+            mColorSplit = colorSplit;
+            mTextSizePinBoxes = toTextSize(metrics, textSizePinBoxes);
+            mTextSizeTitles = toTextSize(metrics, textSizeTitles);
+            mSizeSplit = toTextSize(metrics, sizeSplit);
+            mPaintTextSizePinBoxes = toPaintTextSize(metrics, mTextSizePinBoxes);
+            mPaintTextSizeTitles = toPaintTextSize(metrics, mTextSizeTitles);
+            mPaintSizeSplit = toPaintTextSize(metrics, mSizeSplit);
+        }
+
+        /**
+         * Same conversion as {@link PinViewUtils#convertPixelToDp(android.content.Context, float)}
+         */
+        private static float toTextSize(DisplayMetrics metrics, float px) {
+            return px / (metrics.densityDpi / 160f);
+        }
+
+        private static float toPaintTextSize(DisplayMetrics metrics, float textSize) {
+            return TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, textSize, metrics);
+        }
+    }
+
+    private static final class StyleKey {
+
+        Configuration mConfiguration;
+        private final int mColorTextPinBoxes;
+        private final int mColorTextTitles;
+        private final int mColorSplit;
+        private final float mTextSizePinBoxes;
+        private final float mTextSizeTitles;
+        private final float mSizeSplit;
+        private final int mHashCode;
+
+        StyleKey(Configuration configuration, int colorTextPinBoxes, int colorTextTitles, int colorSplit,
+                 float textSizePinBoxes, float textSizeTitles, float sizeSplit) {
+            mConfiguration = configuration;
+            mColorTextPinBoxes = colorTextPinBoxes;
+            mColorTextTitles = colorTextTitles;
+            mColorSplit = colorSplit;
+            mTextSizePinBoxes = textSizePinBoxes;
+            mTextSizeTitles = textSizeTitles;
+            mSizeSplit = sizeSplit;
+
+            int hashCode = configuration.hashCode();
+            hashCode = 31 * hashCode + colorTextPinBoxes;
+            hashCode = 31 * hashCode + colorTextTitles;
+            hashCode = 31 * hashCode + colorSplit;
+            hashCode = 31 * hashCode + Float.floatToIntBits(textSizePinBoxes);
+            hashCode = 31 * hashCode + Float.floatToIntBits(textSizeTitles);
+            hashCode = 31 * hashCode + Float.floatToIntBits(sizeSplit);
+            mHashCode = hashCode;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof StyleKey)) {
+                return false;
+            }
+            StyleKey key = (StyleKey) o;
+            return mHashCode == key.mHashCode
+                    && mColorTextPinBoxes == key.mColorTextPinBoxes
+                    && mColorTextTitles == key.mColorTextTitles
+                    && mColorSplit == key.mColorSplit
+                    && Float.compare(mTextSizePinBoxes, key.mTextSizePinBoxes) == 0
+                    && Float.compare(mTextSizeTitles, key.mTextSizeTitles) == 0
+                    && Float.compare(mSizeSplit, key.mSizeSplit) == 0
+                    && mConfiguration.equals(key.mConfiguration);
+        }
+
+        @Override
+        public int hashCode() {
+            return mHashCode;
+        }
+    }
+}
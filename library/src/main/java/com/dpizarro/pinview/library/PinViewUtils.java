@@ -3,15 +3,12 @@ package com.dpizarro.pinview.library;
 import android.app.Activity;
 import android.content.Context;
 import android.content.res.Resources;
-import android.os.Build;
 import android.os.IBinder;
 import android.util.DisplayMetrics;
 import android.util.Log;
 import android.view.View;
 import android.view.inputmethod.InputMethodManager;
 
-import java.util.concurrent.atomic.AtomicInteger;
-
 /*
  * Copyright (C) 2015 David Pizarro
  *
@@ -30,48 +27,6 @@ import java.util.concurrent.atomic.AtomicInteger;
 class PinViewUtils {
 
     private static final String LOG_TAG = PinViewUtils.class.getSimpleName();
-    private static final AtomicInteger sNextGeneratedId = new AtomicInteger(1);
-
-    /**
-     * Generate a value suitable for use in {@link View#setId(int)}
-     * This value will not collide with ID values generated at build time by aapt for R.id.
-     *
-     * @return a generated ID value
-     */
-    private static int generateCompatViewId() {
-        for (; ; ) {
-            final int result = sNextGeneratedId.get();
-            int newValue = result + 1;
-            /**
-             * ID number larger than 0x00FFFFFF is reserved for static views defined in the /res xml files.
-             * Android doesn't want you to use 0 as a view's id, and it needs to be flipped before 0x01000000 to avoid
-             * the conflicts with static resource IDs
-             */
-            if (newValue > 0x00FFFFFF) {
-                newValue = 1; // Roll over to 1, not 0.
-            }
-            if (sNextGeneratedId.compareAndSet(result, newValue)) {
-                return result;
-            }
-        }
-    }
-
-    /**
-     * While {@link View#generateViewId()} require API Level >= 17, this tool is compatibe with all API.
-     *
-     * According to current API Level, it decide weather using system API or not. So you can use {@link
-     * #generateViewId()} and {@link View#generateViewId()} in the
-     * same time and don't worry about getting same id.
-     *
-     * @return Id
-     */
-    public static int generateViewId() {
-        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR1) {
-            return generateCompatViewId();
-        } else {
-            return View.generateViewId();
-        }
-    }
 
     /**
      * This method converts device specific pixels to density independent pixels.
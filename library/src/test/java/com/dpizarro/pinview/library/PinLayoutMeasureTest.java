@@ -0,0 +1,204 @@
+package com.dpizarro.pinview.library;
+
+import android.app.Activity;
+import android.content.Context;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.LinearLayout;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * {@link PinLayout} measures each title, PinBox and split once per pass, where the nested weighted LinearLayouts it
+ * replaced measured PinBoxes and splits twice.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class PinLayoutMeasureTest {
+
+    private static final int PIN_BOXES = 4;
+    private static final int WIDTH = 480;
+    private static final int HEIGHT = 800;
+
+    private Context mContext;
+    private final List<CountingView> mViews = new ArrayList<CountingView>();
+
+    @Before
+    public void setUp() {
+        Activity activity = Robolectric.setupActivity(Activity.class);
+        mContext = activity;
+    }
+
+    private CountingView newView() {
+        CountingView view = new CountingView(mContext);
+        mViews.add(view);
+        return view;
+    }
+
+    private int getMeasureCount() {
+        int count = 0;
+        for (CountingView view : mViews) {
+            count += view.mMeasureCount;
+        }
+        return count;
+    }
+
+    /**
+     * Titles, PinBoxes and splits as PinView adds them
+     */
+    private PinLayout newPinLayout() {
+        PinLayout pinLayout = new PinLayout(mContext);
+        for (int i = 0; i < PIN_BOXES; i++) {
+            pinLayout.addTitle(newView(), i);
+        }
+        for (int i = 0, index = 0; i < PIN_BOXES; i++) {
+            if (i > 0) {
+                View split = newView();
+                split.setLayoutParams(new ViewGroup.LayoutParams(ViewGroup.LayoutParams.WRAP_CONTENT,
+                        ViewGroup.LayoutParams.MATCH_PARENT));
+                pinLayout.addPinBoxOrSplit(split, index++, PinLayout.TYPE_SPLIT);
+            }
+            pinLayout.addPinBoxOrSplit(newView(), index++, PinLayout.TYPE_PIN_BOX);
+        }
+        return pinLayout;
+    }
+
+    /**
+     * Same children in the layout PinView had before PinLayout: a row of titles and a row of PinBoxes and splits, with
+     * PinBoxes of 0 width and weight 1
+     */
+    private LinearLayout newNestedLayout() {
+        LinearLayout root = new LinearLayout(mContext);
+        root.setOrientation(LinearLayout.VERTICAL);
+        LinearLayout titles = new LinearLayout(mContext);
+        LinearLayout pinBoxes = new LinearLayout(mContext);
+        for (int i = 0; i < PIN_BOXES; i++) {
+            titles.addView(newView(), new LinearLayout.LayoutParams(0, ViewGroup.LayoutParams.WRAP_CONTENT, 1));
+            if (i > 0) {
+                pinBoxes.addView(newView(), new LinearLayout.LayoutParams(ViewGroup.LayoutParams.WRAP_CONTENT,
+                        ViewGroup.LayoutParams.MATCH_PARENT));
+            }
+            pinBoxes.addView(newView(), new LinearLayout.LayoutParams(0, ViewGroup.LayoutParams.WRAP_CONTENT, 1));
+        }
+        root.addView(titles, new LinearLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
+                ViewGroup.LayoutParams.WRAP_CONTENT));
+        root.addView(pinBoxes, new LinearLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
+                ViewGroup.LayoutParams.WRAP_CONTENT));
+        return root;
+    }
+
+    private static void measure(View view, int widthMode) {
+        view.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, widthMode),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.AT_MOST));
+    }
+
+    @Test
+    public void exactWidthMeasuresEachChildOnce() {
+        PinLayout pinLayout = newPinLayout();
+
+        measure(pinLayout, View.MeasureSpec.EXACTLY);
+
+        for (CountingView view : mViews) {
+            assertEquals(1, view.mMeasureCount);
+        }
+    }
+
+    @Test
+    public void wrappedWidthMeasuresEachChildOnce() {
+        PinLayout pinLayout = newPinLayout();
+
+        measure(pinLayout, View.MeasureSpec.AT_MOST);
+
+        for (CountingView view : mViews) {
+            assertEquals(1, view.mMeasureCount);
+        }
+    }
+
+    @Test
+    public void fewerMeasuresThanNestedLayout() {
+        PinLayout pinLayout = newPinLayout();
+        measure(pinLayout, View.MeasureSpec.AT_MOST);
+        int pinLayoutCount = getMeasureCount();
+        int children = mViews.size();
+        mViews.clear();
+
+        LinearLayout nested = newNestedLayout();
+        measure(nested, View.MeasureSpec.AT_MOST);
+        int nestedCount = getMeasureCount();
+
+        assertEquals(children, pinLayoutCount);
+        assertTrue("PinLayout: " + pinLayoutCount + ", nested layout: " + nestedCount, pinLayoutCount < nestedCount);
+    }
+
+    @Test
+    public void pinBoxesAndSplitsAtSamePlaceAsNestedLayout() {
+        PinLayout pinLayout = newPinLayout();
+        measure(pinLayout, View.MeasureSpec.EXACTLY);
+        pinLayout.layout(0, 0, pinLayout.getMeasuredWidth(), pinLayout.getMeasuredHeight());
+
+        LinearLayout nested = newNestedLayout();
+        measure(nested, View.MeasureSpec.EXACTLY);
+        nested.layout(0, 0, nested.getMeasuredWidth(), nested.getMeasuredHeight());
+        ViewGroup nestedPinBoxes = (ViewGroup) nested.getChildAt(1);
+
+        int titles = pinLayout.getTitleCount();
+        assertEquals(nestedPinBoxes.getChildCount(), pinLayout.getChildCount() - titles);
+        for (int i = 0; i < nestedPinBoxes.getChildCount(); i++) {
+            View expected = nestedPinBoxes.getChildAt(i);
+            View child = pinLayout.getChildAt(titles + i);
+            assertEquals("left of child " + i, expected.getLeft(), child.getLeft());
+            assertEquals("width of child " + i, expected.getWidth(), child.getWidth());
+        }
+        //Titles are above their PinBox, where the nested layout gave them a column of their own
+        for (int i = 0, pinBox = titles; i < titles; i++, pinBox += 2) {
+            assertEquals("left of title " + i, pinLayout.getChildAt(pinBox).getLeft(),
+                    pinLayout.getChildAt(i).getLeft());
+        }
+    }
+
+    /**
+     * View which counts its measures, with the minimum size of a PinBox
+     */
+    private static final class CountingView extends View {
+
+        int mMeasureCount;
+
+        CountingView(Context context) {
+            super(context);
+            setMinimumWidth(40);
+            setMinimumHeight(40);
+        }
+
+        @Override
+        protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+            mMeasureCount++;
+            super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+        }
+    }
+}
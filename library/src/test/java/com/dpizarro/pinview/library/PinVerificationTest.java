@@ -0,0 +1,141 @@
+package com.dpizarro.pinview.library;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * A cancelled verification still reads the whole PIN: it is only wiped by the executor once
+ * {@link PinVerifier#verify(char[])} has returned.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class PinVerificationTest {
+
+    private ExecutorService mExecutor;
+    private BlockingVerifier mVerifier;
+    private PinVerification<Boolean> mVerification;
+
+    @Before
+    public void setUp() {
+        mExecutor = Executors.newSingleThreadExecutor();
+        mVerifier = new BlockingVerifier();
+        mVerification = new PinVerification<Boolean>(mVerifier, mExecutor, new PinVerifier.Callback<Boolean>() {
+            @Override
+            public void onVerified(Boolean result) {
+            }
+
+            @Override
+            public void onRejected() {
+            }
+
+            @Override
+            public void onError(Exception error) {
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdownNow();
+    }
+
+    private void awaitExecutor() throws InterruptedException {
+        mExecutor.shutdown();
+        assertTrue(mExecutor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void startWipesCallerPin() throws InterruptedException {
+        char[] pin = "1234".toCharArray();
+
+        mVerification.start(pin);
+
+        assertArrayEquals(new char[4], pin);
+        mVerifier.mRelease.countDown();
+        awaitExecutor();
+        assertEquals("1234", mVerifier.mSeen);
+    }
+
+    @Test
+    public void cancelledVerificationReadsWholePin() throws InterruptedException {
+        mVerification.start("1234".toCharArray());
+        assertTrue(mVerifier.mEntered.await(5, TimeUnit.SECONDS));
+
+        mVerification.cancel();
+        mVerifier.mRelease.countDown();
+        awaitExecutor();
+
+        assertEquals("1234", mVerifier.mSeen);
+        assertArrayEquals(new char[4], mVerifier.mReceived);
+    }
+
+    @Test
+    public void cancelledSpeculationReadsWholePin() throws InterruptedException {
+        mVerification.setSpeculativeBudget(1);
+        mVerification.speculate("123 ".toCharArray(), 3);
+        assertTrue(mVerifier.mEntered.await(5, TimeUnit.SECONDS));
+
+        mVerification.cancelSpeculation();
+        mVerifier.mRelease.countDown();
+        awaitExecutor();
+
+        assertEquals("1230", mVerifier.mSeen);
+        assertArrayEquals(new char[4], mVerifier.mReceived);
+    }
+
+    /**
+     * Verifier which waits to be released before reading the PIN, even if it is interrupted
+     */
+    private static final class BlockingVerifier implements PinVerifier<Boolean> {
+
+        final CountDownLatch mEntered = new CountDownLatch(1);
+        final CountDownLatch mRelease = new CountDownLatch(1);
+        volatile char[] mReceived;
+        volatile String mSeen;
+
+        @Override
+        public Boolean verify(char[] pin) {
+            mReceived = pin;
+            mEntered.countDown();
+            boolean released = false;
+            while (!released) {
+                try {
+                    released = mRelease.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    //Cancelled: keep reading the PIN as a verifier which ignores interrupts would
+                }
+            }
+            mSeen = new String(pin);
+            return Arrays.equals(pin, "1234".toCharArray());
+        }
+    }
+}
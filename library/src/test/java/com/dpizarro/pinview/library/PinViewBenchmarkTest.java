@@ -0,0 +1,171 @@
+package com.dpizarro.pinview.library;
+
+import android.app.Activity;
+import android.graphics.Color;
+import android.os.Parcelable;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.Shadows;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import static org.junit.Assert.assertEquals;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * Latency of the heavy paths of {@link PinView} on the JVM: construction with its attributes, setSettings with its
+ * setPin and setTitles, a restyle and a saved state restored in a new PinView.
+ *
+ * Every combination of 4, 8, 16 and 64 PinBoxes, split, titles and native PinBox is run a few times to warm up and
+ * then measured with {@link PinViewMetrics}. Results are written as CSV, one line per combination and event, to
+ * compare releases.
+ *
+ * Run with: ./gradlew :library:testDebug -PbenchmarkIterations=50
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class PinViewBenchmarkTest {
+
+    private static final int[] NUMBER_PIN_BOXES = {4, 8, 16, 64};
+    private static final int[] EVENTS = {PinViewMetrics.CONSTRUCT, PinViewMetrics.SET_SETTINGS,
+            PinViewMetrics.SET_PIN, PinViewMetrics.SET_TITLES, PinViewMetrics.RESTYLE, PinViewMetrics.SAVE_STATE,
+            PinViewMetrics.RESTORE_STATE};
+
+    private Activity mActivity;
+
+    @Before
+    public void setUp() {
+        mActivity = Robolectric.setupActivity(Activity.class);
+        PinViewMetrics.setEnabled(false);
+        PinViewMetrics.reset();
+    }
+
+    @After
+    public void tearDown() {
+        PinViewMetrics.setEnabled(false);
+        PinViewMetrics.reset();
+    }
+
+    @Test
+    public void benchmark() throws IOException {
+        int warmUp = Integer.getInteger("pinview.benchmark.warmup", 2);
+        int iterations = Integer.getInteger("pinview.benchmark.iterations", 5);
+        File output = new File(System.getProperty("pinview.benchmark.output", "build/reports/pinview-benchmark.csv"));
+
+        StringBuilder csv = new StringBuilder(
+                "pin_boxes,split,titles,native_pin_box,event,count,mean_ns,p50_ns,p90_ns,p99_ns,max_ns\n");
+        for (int numberPinBoxes : NUMBER_PIN_BOXES) {
+            for (int i = 0; i < 8; i++) {
+                boolean split = (i & 1) != 0;
+                boolean titles = (i & 2) != 0;
+                boolean nativePinBox = (i & 4) != 0;
+
+                for (int j = 0; j < warmUp; j++) {
+                    runIteration(j, numberPinBoxes, split, titles, nativePinBox);
+                }
+                PinViewMetrics.reset();
+                PinViewMetrics.setEnabled(true);
+                for (int j = 0; j < iterations; j++) {
+                    runIteration(j, numberPinBoxes, split, titles, nativePinBox);
+                }
+                PinViewMetrics.setEnabled(false);
+
+                PinViewMetrics.Snapshot snapshot = PinViewMetrics.snapshot();
+                //The saved state is restored in a second PinView
+                assertEquals(2L * iterations, snapshot.getCount(PinViewMetrics.CONSTRUCT));
+                assertEquals((long) iterations, snapshot.getCount(PinViewMetrics.RESTORE_STATE));
+                for (int event : EVENTS) {
+                    long count = snapshot.getCount(event);
+                    csv.append(numberPinBoxes)
+                            .append(',').append(split)
+                            .append(',').append(titles)
+                            .append(',').append(nativePinBox)
+                            .append(',').append(PinViewMetrics.getEventName(event))
+                            .append(',').append(count)
+                            .append(',').append(count > 0 ? snapshot.getTotalNanos(event) / count : 0)
+                            .append(',').append(snapshot.getPercentileNanos(event, 0.5))
+                            .append(',').append(snapshot.getPercentileNanos(event, 0.9))
+                            .append(',').append(snapshot.getPercentileNanos(event, 0.99))
+                            .append(',').append(snapshot.getMaxNanos(event))
+                            .append('\n');
+                }
+            }
+        }
+
+        File parent = output.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Can't create " + parent);
+        }
+        Writer writer = new OutputStreamWriter(new FileOutputStream(output), "UTF-8");
+        try {
+            writer.write(csv.toString());
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Build a PinView, apply the settings of the combination, restyle it and restore its state in a new PinView
+     */
+    private void runIteration(int iteration, int numberPinBoxes, boolean split, boolean titles,
+                              boolean nativePinBox) {
+        //Under Robolectric every AccessibilityManager registers a ContentObserver which is never released, so each
+        //iteration would be slower than the previous one
+        Shadows.shadowOf(mActivity.getContentResolver()).clearContentObservers();
+        Shadows.shadowOf(mActivity.getApplication().getContentResolver()).clearContentObservers();
+        PinView pinView = new PinView(mActivity, null);
+        pinView.setSettings(newSettings(pinView, numberPinBoxes, split, titles, nativePinBox));
+        pinView.setColorTextPinBoxes(iteration % 2 == 0 ? Color.RED : Color.BLUE);
+        pinView.setPin("12");
+
+        Parcelable state = pinView.onSaveInstanceState();
+        PinView restored = new PinView(mActivity, null);
+        restored.onRestoreInstanceState(state);
+    }
+
+    private static PinViewSettings newSettings(PinView pinView, int numberPinBoxes, boolean split, boolean titles,
+                                               boolean nativePinBox) {
+        String[] pinTitles = null;
+        if (titles) {
+            pinTitles = new String[numberPinBoxes];
+            for (int i = 0; i < numberPinBoxes; i++) {
+                pinTitles[i] = String.valueOf(i + 1);
+            }
+        }
+        return new PinViewSettings.Builder()
+                .withNumberPinBoxes(numberPinBoxes)
+                .withNumberCharacters(1)
+                .withSplit(split ? "-" : null)
+                .withPinTitles(pinTitles)
+                .withNativePinBox(nativePinBox)
+                .withMaskPassword(pinView.isMaskPassword())
+                .withTextSizePinBox(pinView.getTextSizePinBoxes())
+                .withTextSizeTitles(pinView.getTextSizeTitles())
+                .withSizeSplit(pinView.getSizeSplit())
+                .build();
+    }
+}
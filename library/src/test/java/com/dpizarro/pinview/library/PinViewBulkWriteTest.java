@@ -0,0 +1,131 @@
+package com.dpizarro.pinview.library;
+
+import android.app.Activity;
+import android.content.Context;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * A PIN written at once (set, pasted, one-time code or restored) notifies {@link PinView} of the change once, not once
+ * per rendered PinBox, so verifications are cancelled and speculated again only once.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class PinViewBulkWriteTest {
+
+    private static final int PIN_BOXES = 6;
+
+    private Activity mActivity;
+    private CountingPinView mPinView;
+
+    @Before
+    public void setUp() {
+        mActivity = Robolectric.setupActivity(Activity.class);
+        mPinView = new CountingPinView(mActivity);
+        mPinView.setPin(PIN_BOXES);
+        mPinView.mChanges = 0;
+    }
+
+    @Test
+    public void setPinNotifiesOnce() {
+        mPinView.setPin("123456");
+
+        assertEquals(1, mPinView.mChanges);
+        assertEquals("123456", mPinView.getPinResults());
+    }
+
+    @Test
+    public void samePinNotifiesNothing() {
+        mPinView.setPin("123456");
+        mPinView.mChanges = 0;
+
+        mPinView.setPin("123456");
+
+        assertEquals(0, mPinView.mChanges);
+    }
+
+    @Test
+    public void restoreNotifiesOnce() {
+        PinBuffer saved = new PinBuffer();
+        saved.resize(PIN_BOXES, 1);
+        saved.append(0, '1');
+        saved.append(2, '3');
+        saved.append(5, '6');
+        char[] state = new char[saved.stateLength()];
+        saved.saveState(state);
+
+        mPinView.restorePinBoxes(state);
+
+        assertEquals(1, mPinView.mChanges);
+        assertEquals("1 3  6", mPinView.getPinResults());
+    }
+
+    @Test
+    public void singleInputNotifiesOnce() {
+        mPinView.setSingleInput(true);
+        mPinView.mChanges = 0;
+
+        mPinView.mHiddenInput.setText("123456");
+
+        assertEquals(1, mPinView.mChanges);
+        assertEquals("123456", mPinView.getPinResults());
+    }
+
+    @Test
+    public void keystrokeNotifiesOnce() {
+        mPinView.pinBoxes[0].setText("1");
+
+        assertEquals(1, mPinView.mChanges);
+    }
+
+    @Test
+    public void fewerCharactersNotifiesOnce() {
+        mPinView.setNumberCharacters(2);
+        mPinView.setPin("123456789012");
+        mPinView.mChanges = 0;
+
+        mPinView.setNumberCharacters(1);
+
+        assertEquals(1, mPinView.mChanges);
+    }
+
+    /**
+     * PinView which counts the notifications of a changed PIN
+     */
+    private static final class CountingPinView extends PinView {
+
+        int mChanges;
+
+        CountingPinView(Context context) {
+            super(context, null);
+        }
+
+        @Override
+        protected void notifyPinViewChanged() {
+            mChanges++;
+            super.notifyPinViewChanged();
+        }
+    }
+}
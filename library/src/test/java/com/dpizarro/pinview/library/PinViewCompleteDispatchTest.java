@@ -0,0 +1,154 @@
+package com.dpizarro.pinview.library;
+
+import android.app.Activity;
+import android.widget.FrameLayout;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * With an executor, {@link PinView.OnCompleteListener} gets the last completion state of each frame, with the value
+ * taken when it happened. Frames are run by unpausing the main looper.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class PinViewCompleteDispatchTest {
+
+    private PinView mPinView;
+    private final List<Boolean> mCompleted = new ArrayList<Boolean>();
+    private final List<String> mPinResults = new ArrayList<String>();
+    private int mExecuted;
+
+    @Before
+    public void setUp() {
+        Activity activity = Robolectric.setupActivity(Activity.class);
+        FrameLayout container = new FrameLayout(activity);
+        activity.setContentView(container);
+
+        mPinView = new PinView(activity, null);
+        mPinView.setPin(4);
+        mPinView.setOnCompleteListener(new PinView.OnCompleteListener() {
+            @Override
+            public void onComplete(boolean completed, String pinResults) {
+                mCompleted.add(completed);
+                mPinResults.add(pinResults);
+            }
+        });
+        mPinView.setOnCompleteExecutor(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                mExecuted++;
+                command.run();
+            }
+        });
+        container.addView(mPinView);
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+        ShadowLooper.pauseMainLooper();
+    }
+
+    private void nextFrame() {
+        ShadowLooper.unPauseMainLooper();
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+        ShadowLooper.pauseMainLooper();
+    }
+
+    @Test
+    public void completionWaitsForNextFrame() {
+        mPinView.setPin("1234");
+
+        assertTrue(mCompleted.isEmpty());
+        nextFrame();
+
+        assertEquals(1, mExecuted);
+        assertEquals(1, mCompleted.size());
+        assertTrue(mCompleted.get(0));
+        assertEquals("1234", mPinResults.get(0));
+    }
+
+    @Test
+    public void valueIsTakenAtCompletion() {
+        mPinView.setPin("1234");
+        mPinView.getPinBuffer().wipe();
+        nextFrame();
+
+        assertEquals("1234", mPinResults.get(0));
+    }
+
+    @Test
+    public void lostCompletionIsDeliveredAsNonCompletion() {
+        mPinView.setDeleteOnClick(true);
+
+        mPinView.setPin("1234");
+        mPinView.clear();
+        nextFrame();
+
+        assertEquals(1, mCompleted.size());
+        assertEquals(false, mCompleted.get(0));
+        assertNull(mPinResults.get(0));
+    }
+
+    @Test
+    public void lostCompletionIsDroppedWithoutDeleteOnClick() {
+        mPinView.setDeleteOnClick(false);
+
+        mPinView.setPin("1234");
+        mPinView.clear();
+        nextFrame();
+
+        assertEquals(0, mExecuted);
+        assertTrue(mCompleted.isEmpty());
+    }
+
+    @Test
+    public void lastCompletionOfFrameIsDelivered() {
+        mPinView.setPin("1234");
+        mPinView.setPin("5678");
+        nextFrame();
+
+        assertEquals(1, mCompleted.size());
+        assertTrue(mCompleted.get(0));
+        assertEquals("5678", mPinResults.get(0));
+    }
+
+    @Test
+    public void eachFrameIsDelivered() {
+        mPinView.setDeleteOnClick(true);
+
+        mPinView.setPin("1234");
+        nextFrame();
+        mPinView.clear();
+        nextFrame();
+
+        assertEquals(2, mCompleted.size());
+        assertTrue(mCompleted.get(0));
+        assertEquals(false, mCompleted.get(1));
+    }
+}
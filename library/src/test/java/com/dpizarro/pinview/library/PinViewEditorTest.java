@@ -0,0 +1,152 @@
+package com.dpizarro.pinview.library;
+
+import android.app.Activity;
+import android.content.Context;
+import android.graphics.Color;
+import android.view.View;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * A batch of changes made with {@link PinView#edit()} restyles PinBoxes, titles and splits once each and requests a
+ * single layout, however many setters it holds.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class PinViewEditorTest {
+
+    private static final int WIDTH = 480;
+    private static final int HEIGHT = 800;
+
+    private CountingPinView mPinView;
+
+    @Before
+    public void setUp() {
+        Activity activity = Robolectric.setupActivity(Activity.class);
+        mPinView = new CountingPinView(activity);
+        mPinView.setTitles(new String[]{"A", "B", "C", "D"});
+        mPinView.setSplit("-");
+        mPinView.setPin(4);
+        layout();
+        mPinView.reset();
+    }
+
+    @Test
+    public void applyRestylesOnceAndRequestsOneLayout() {
+        mPinView.edit()
+                .setMaskPassword(!mPinView.isMaskPassword())
+                .setNumberCharacters(2)
+                .setTextSizePinBoxes(mPinView.getTextSizePinBoxes() + 2)
+                .setColorTextPinBoxes(Color.RED)
+                .setTextSizeTitles(mPinView.getTextSizeTitles() + 2)
+                .setColorTitles(Color.GREEN)
+                .setSizeSplit(mPinView.getSizeSplit() + 2)
+                .setColorSplit(Color.BLUE)
+                .apply();
+
+        assertEquals(1, mPinView.mPinBoxesRestyles);
+        assertEquals(1, mPinView.mTitlesRestyles);
+        assertEquals(1, mPinView.mSplitsRestyles);
+        assertEquals(1, mPinView.mLayoutRequests);
+    }
+
+    @Test
+    public void settersRestyleOnceEach() {
+        mPinView.setMaskPassword(!mPinView.isMaskPassword());
+        mPinView.setNumberCharacters(2);
+        mPinView.setTextSizePinBoxes(mPinView.getTextSizePinBoxes() + 2);
+        mPinView.setColorTextPinBoxes(Color.RED);
+
+        assertEquals(4, mPinView.mPinBoxesRestyles);
+    }
+
+    @Test
+    public void applyWithoutLayoutChangeRequestsNoLayout() {
+        mPinView.edit()
+                .setColorTextPinBoxes(Color.RED)
+                .setColorTitles(Color.GREEN)
+                .setColorSplit(Color.BLUE)
+                .apply();
+
+        assertEquals(1, mPinView.mPinBoxesRestyles);
+        assertEquals(1, mPinView.mTitlesRestyles);
+        assertEquals(1, mPinView.mSplitsRestyles);
+        assertEquals(0, mPinView.mLayoutRequests);
+    }
+
+    private void layout() {
+        mPinView.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.AT_MOST));
+        mPinView.layout(0, 0, mPinView.getMeasuredWidth(), mPinView.getMeasuredHeight());
+        assertFalse(mPinView.isLayoutRequested());
+    }
+
+    /**
+     * PinView which counts its restyles and the layouts requested by itself or its children
+     */
+    private static final class CountingPinView extends PinView {
+
+        int mPinBoxesRestyles;
+        int mTitlesRestyles;
+        int mSplitsRestyles;
+        int mLayoutRequests;
+
+        CountingPinView(Context context) {
+            super(context, null);
+        }
+
+        void reset() {
+            mPinBoxesRestyles = 0;
+            mTitlesRestyles = 0;
+            mSplitsRestyles = 0;
+            mLayoutRequests = 0;
+        }
+
+        @Override
+        void setStylesPinBoxes() {
+            mPinBoxesRestyles++;
+            super.setStylesPinBoxes();
+        }
+
+        @Override
+        void setStylePinTitles() {
+            mTitlesRestyles++;
+            super.setStylePinTitles();
+        }
+
+        @Override
+        void setStylesSplits() {
+            mSplitsRestyles++;
+            super.setStylesSplits();
+        }
+
+        @Override
+        public void requestLayout() {
+            mLayoutRequests++;
+            super.requestLayout();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.dpizarro.pinview.library;
+
+import android.app.Activity;
+import android.widget.EditText;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * The keystroke path of {@link PinViewBaseHelper} (find the focused PinBox, copy it into {@link PinBuffer} and move to
+ * the next empty PinBox) must not allocate once it's warmed up. Allocations are counted with the HotSpot thread
+ * allocation counter.
+ *
+ * Moving the focus allocates inside the framework, so the PinBoxes aren't focusable and the focus change is notified
+ * as {@link PinView#onFocusChange(android.view.View, boolean)} does.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class PinViewKeystrokeAllocationTest {
+
+    private static final int PIN_BOXES = 16;
+    private static final int WARM_UP = 20;
+    private static final int ROUNDS = 200;
+
+    private Activity mActivity;
+
+    @Before
+    public void setUp() {
+        mActivity = Robolectric.setupActivity(Activity.class);
+    }
+
+    @After
+    public void tearDown() {
+        PinViewPool.setEnabled(false);
+    }
+
+    @Test
+    public void keystrokeDoesNotAllocate() {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        assumeTrue("Thread allocation counter not supported",
+                threadMXBean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threadMXBean;
+        assumeTrue("Thread allocation counter not supported", allocations.isThreadAllocatedMemorySupported());
+        allocations.setThreadAllocatedMemoryEnabled(true);
+
+        PinView pinView = new PinView(mActivity, null);
+        mActivity.setContentView(pinView);
+        pinView.setPin(PIN_BOXES);
+        //Every PinBox already holds its character, as the keyboard leaves it before notifying the TextWatcher
+        pinView.setPin("1234567890123456");
+        for (int i = 0; i < PIN_BOXES; i++) {
+            pinView.getPinBox(i).setFocusable(false);
+        }
+
+        typePin(pinView, WARM_UP);
+        long threadId = Thread.currentThread().getId();
+        long before = allocations.getThreadAllocatedBytes(threadId);
+        typePin(pinView, ROUNDS);
+        long allocated = allocations.getThreadAllocatedBytes(threadId) - before;
+
+        int keystrokes = ROUNDS * (PIN_BOXES - 1);
+        //Reading the counter allocates a few bytes on some JVMs, far less than one byte per keystroke
+        assertTrue("Allocated " + allocated + " bytes in " + keystrokes + " keystrokes", allocated < keystrokes);
+    }
+
+    @Test
+    public void pooledPinBoxTakesItsNewIndex() {
+        PinViewPool.setEnabled(true);
+        PinView previous = new PinView(mActivity, null);
+        previous.setPin(PIN_BOXES);
+        List<EditText> recycled = new ArrayList<EditText>();
+        for (int i = PIN_BOXES - 3; i < PIN_BOXES; i++) {
+            recycled.add(previous.getPinBox(i));
+        }
+        previous.setPin(PIN_BOXES - 3);
+
+        PinView pinView = new PinView(mActivity, null);
+        mActivity.setContentView(pinView);
+        pinView.setPin(4);
+        EditText pooled = pinView.getPinBox(2);
+        assumeTrue("PinBox not taken from the pool", recycled.contains(pooled));
+        pinView.restorePinBoxes(new char[]{'1', '\0', '7', '\0'});
+
+        pinView.setCurrentFocus(pooled);
+        pinView.onTextChanged(pooled.getText(), 0, 0, 1);
+
+        //From a stale or an unknown position, the search would stop at the empty PinBox before it
+        assertSame(pinView.getPinBox(3), pinView.findFocus());
+    }
+
+    /**
+     * Type one character in every PinBox but the last one, as the keyboard does in the focused PinBox, and wipe the
+     * PIN before it's completed
+     */
+    private static void typePin(PinView pinView, int rounds) {
+        for (int round = 0; round < rounds; round++) {
+            for (int i = 0; i < PIN_BOXES - 1; i++) {
+                EditText pinBox = pinView.getPinBox(i);
+                pinView.setCurrentFocus(pinBox);
+                pinView.onTextChanged(pinBox.getText(), 0, 0, 1);
+            }
+            pinView.getPinBuffer().wipe();
+        }
+    }
+}
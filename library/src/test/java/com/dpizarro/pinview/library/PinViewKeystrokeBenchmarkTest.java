@@ -0,0 +1,155 @@
+package com.dpizarro.pinview.library;
+
+import android.app.Activity;
+import android.view.View;
+import android.widget.EditText;
+import android.widget.LinearLayout;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * Cost of a keystroke in a PinBox, until the next empty PinBox is focused, from 4 to 64 PinBoxes.
+ *
+ * PinBoxes, titles and splits are held in indexed arrays, so the cost of a keystroke shouldn't grow with the number
+ * of PinBoxes: the lines of the results file should stay flat from 4 to 64, and a keystroke with 64 PinBoxes must
+ * cost less than {@link #MAX_COST_RATIO} times a keystroke with 4.
+ *
+ * Under Robolectric every focus change is slower than the previous one, whatever the number of PinBoxes, so the
+ * PinBoxes aren't focusable and the focus change is notified as {@link PinView#onFocusChange(View, boolean)} does.
+ * Every PinView is typed in turns, with as many keystrokes each and in both orders.
+ *
+ * Run with: ./gradlew :library:testDebug -PbenchmarkIterations=50
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class PinViewKeystrokeBenchmarkTest {
+
+    private static final int[] NUMBER_PIN_BOXES = {4, 8, 16, 32, 64};
+    private static final int KEYSTROKES_PER_TURN = 64;
+    private static final double MAX_COST_RATIO = 2.5;
+
+    private Activity mActivity;
+
+    @Before
+    public void setUp() {
+        mActivity = Robolectric.setupActivity(Activity.class);
+        PinViewMetrics.setEnabled(false);
+        PinViewMetrics.reset();
+    }
+
+    @After
+    public void tearDown() {
+        PinViewMetrics.setEnabled(false);
+        PinViewMetrics.reset();
+    }
+
+    @Test
+    public void keystroke() throws IOException {
+        int warmUp = Integer.getInteger("pinview.benchmark.warmup", 2);
+        int iterations = Integer.getInteger("pinview.benchmark.iterations", 5);
+        File output = new File(System.getProperty("pinview.benchmark.output", "build/reports/pinview-benchmark.csv"));
+        output = new File(output.getAbsoluteFile().getParentFile(), "pinview-keystroke-benchmark.csv");
+
+        LinearLayout content = new LinearLayout(mActivity);
+        content.setOrientation(LinearLayout.VERTICAL);
+        mActivity.setContentView(content);
+        PinView[] pinViews = new PinView[NUMBER_PIN_BOXES.length];
+        for (int i = 0; i < pinViews.length; i++) {
+            pinViews[i] = new PinView(mActivity, null);
+            content.addView(pinViews[i]);
+            pinViews[i].setPin(NUMBER_PIN_BOXES[i]);
+            for (int j = 0; j < NUMBER_PIN_BOXES[i]; j++) {
+                pinViews[i].getPinBox(j).setFocusable(false);
+            }
+        }
+
+        long[] counts = new long[pinViews.length];
+        long[] totalNanos = new long[pinViews.length];
+        long[] maxNanos = new long[pinViews.length];
+        for (int i = 0; i < warmUp + iterations; i++) {
+            for (int turn = 0; turn < pinViews.length; turn++) {
+                int p = i % 2 == 0 ? turn : pinViews.length - 1 - turn;
+                PinViewMetrics.reset();
+                PinViewMetrics.setEnabled(i >= warmUp);
+                for (int pins = 0; pins < KEYSTROKES_PER_TURN / NUMBER_PIN_BOXES[p]; pins++) {
+                    typePin(pinViews[p], NUMBER_PIN_BOXES[p]);
+                }
+                PinViewMetrics.setEnabled(false);
+
+                PinViewMetrics.Snapshot snapshot = PinViewMetrics.snapshot();
+                counts[p] += snapshot.getCount(PinViewMetrics.KEYSTROKE);
+                totalNanos[p] += snapshot.getTotalNanos(PinViewMetrics.KEYSTROKE);
+                maxNanos[p] = Math.max(maxNanos[p], snapshot.getMaxNanos(PinViewMetrics.KEYSTROKE));
+            }
+        }
+
+        StringBuilder csv = new StringBuilder("pin_boxes,keystrokes,mean_ns,max_ns\n");
+        for (int p = 0; p < pinViews.length; p++) {
+            //Every keystroke fills its PinBox and moves to the next one, or completes the PIN
+            assertEquals((long) KEYSTROKES_PER_TURN * iterations, counts[p]);
+            csv.append(NUMBER_PIN_BOXES[p])
+                    .append(',').append(counts[p])
+                    .append(',').append(totalNanos[p] / counts[p])
+                    .append(',').append(maxNanos[p])
+                    .append('\n');
+        }
+
+        File parent = output.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Can't create " + parent);
+        }
+        Writer writer = new OutputStreamWriter(new FileOutputStream(output), "UTF-8");
+        try {
+            writer.write(csv.toString());
+        } finally {
+            writer.close();
+        }
+
+        double ratio = (double) totalNanos[pinViews.length - 1] / totalNanos[0];
+        assertTrue("Keystroke with " + NUMBER_PIN_BOXES[pinViews.length - 1] + " PinBoxes costs " + ratio
+                + " times a keystroke with " + NUMBER_PIN_BOXES[0] + "\n" + csv, ratio < MAX_COST_RATIO);
+    }
+
+    /**
+     * Type one digit in each PinBox, as the keyboard does in the focused one, and clear the completed PIN
+     */
+    private static void typePin(PinView pinView, int numberPinBoxes) {
+        for (int i = 0; i < numberPinBoxes; i++) {
+            EditText pinBox = pinView.getPinBox(i);
+            pinView.setCurrentFocus(pinBox);
+            pinBox.getText().append((char) ('0' + i % 10));
+        }
+        assertEquals(-1, pinView.getPinBuffer().nextEmptyPinBox(0));
+        pinView.clear();
+    }
+}
@@ -0,0 +1,181 @@
+package com.dpizarro.pinview.library;
+
+import android.app.Activity;
+import android.text.InputType;
+import android.widget.FrameLayout;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * One-time codes from an in-process {@link PinView.OtpSource} are written at once and complete {@link PinView} once.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class PinViewOtpSourceTest {
+
+    private FrameLayout mContainer;
+    private PinView mPinView;
+    private FakeOtpSource mOtpSource;
+    private final List<String> mCompleted = new ArrayList<String>();
+    private int mNotCompleted;
+
+    @Before
+    public void setUp() {
+        Activity activity = Robolectric.setupActivity(Activity.class);
+        mContainer = new FrameLayout(activity);
+        activity.setContentView(mContainer);
+
+        mPinView = new PinView(activity, null);
+        mPinView.setPin(6);
+        mPinView.setOnCompleteListener(new PinView.OnCompleteListener() {
+            @Override
+            public void onComplete(boolean completed, String pinResults) {
+                if (completed) {
+                    mCompleted.add(pinResults);
+                } else {
+                    mNotCompleted++;
+                }
+            }
+        });
+        mOtpSource = new FakeOtpSource();
+        mPinView.setOtpSource(mOtpSource);
+        mContainer.addView(mPinView);
+    }
+
+    @Test
+    public void sourceFollowsWindow() {
+        assertNotNull(mOtpSource.mReceiver);
+        assertFalse(mOtpSource.mStopped);
+
+        mContainer.removeView(mPinView);
+        assertTrue(mOtpSource.mStopped);
+    }
+
+    @Test
+    public void codeCompletesOnce() {
+        mOtpSource.deliver("123-456");
+
+        assertEquals(1, mCompleted.size());
+        assertEquals("123456", mCompleted.get(0));
+        assertEquals(0, mNotCompleted);
+        assertEquals("123456", mPinView.getPinResults());
+    }
+
+    @Test
+    public void sameCodeAgainDoesNotCompleteAgain() {
+        mOtpSource.deliver("123456");
+        mOtpSource.deliver("123456");
+
+        assertEquals(1, mCompleted.size());
+    }
+
+    @Test
+    public void newCodeCompletesAgain() {
+        mOtpSource.deliver("123456");
+        mOtpSource.deliver("654321");
+
+        assertEquals(2, mCompleted.size());
+        assertEquals("654321", mCompleted.get(1));
+    }
+
+    @Test
+    public void invalidCodesAreIgnored() {
+        mOtpSource.deliver("12345");
+        mOtpSource.deliver("1234567");
+        mOtpSource.deliver("12a456");
+
+        assertEquals(0, mCompleted.size());
+        assertEquals(0, mPinView.getPinBuffer().getPinBoxLength(0));
+    }
+
+    @Test
+    public void textCodeSkipsSeparators() {
+        mPinView.setPin(6, InputType.TYPE_CLASS_TEXT);
+
+        mOtpSource.deliver("ABC-DEF");
+
+        assertEquals(1, mCompleted.size());
+        assertEquals("ABCDEF", mCompleted.get(0));
+        assertEquals("ABCDEF", mPinView.getPinResults());
+    }
+
+    @Test
+    public void textCodeWithSeparatorsMustFit() {
+        mPinView.setPin(6, InputType.TYPE_CLASS_TEXT);
+
+        mOtpSource.deliver("ABC-DEF-G");
+
+        assertEquals(0, mCompleted.size());
+        assertEquals(0, mPinView.getPinBuffer().getPinBoxLength(0));
+    }
+
+    @Test
+    public void codeFromAnotherThread() throws InterruptedException {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                mOtpSource.mReceiver.onOtpReceived("987654");
+            }
+        });
+        thread.start();
+        thread.join();
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+
+        assertEquals(1, mCompleted.size());
+        assertEquals("987654", mCompleted.get(0));
+    }
+
+    /**
+     * Source fed by the test, as an autofill service or a broadcast would do
+     */
+    private static final class FakeOtpSource implements PinView.OtpSource {
+
+        PinView.OtpReceiver mReceiver;
+        boolean mStopped;
+
+        @Override
+        public void start(PinView.OtpReceiver receiver) {
+            mReceiver = receiver;
+            mStopped = false;
+        }
+
+        @Override
+        public void stop() {
+            mStopped = true;
+        }
+
+        void deliver(String code) {
+            mReceiver.onOtpReceived(code);
+            ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.dpizarro.pinview.library;
+
+import android.app.Activity;
+import android.content.Context;
+import android.graphics.Color;
+import android.graphics.drawable.Drawable;
+import android.text.InputFilter;
+import android.util.AttributeSet;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.EditText;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * A restyle only sets the attributes which have changed: the other setters of the PinBoxes are never called again.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class PinViewRestyleTest {
+
+    private PinView mPinView;
+    private CountingEditText[] mPinBoxes;
+
+    @Before
+    public void setUp() {
+        Activity activity = Robolectric.setupActivity(Activity.class);
+        //PinBoxes are inflated from the library layout, so the factory of the Activity creates counting PinBoxes
+        LayoutInflater.from(activity).setFactory2(new CountingFactory());
+        mPinView = new PinView(activity, null);
+        mPinView.setSplit("-");
+        mPinView.setPin(4);
+
+        mPinBoxes = new CountingEditText[mPinView.pinBoxes.length];
+        for (int i = 0; i < mPinBoxes.length; i++) {
+            mPinBoxes[i] = (CountingEditText) mPinView.getPinBox(i);
+            //Only the setters called by the restyles under test are counted, not the ones of the inflation
+            mPinBoxes[i].reset();
+        }
+    }
+
+    @Test
+    public void textColorOnlySetsTextColor() {
+        mPinView.setColorTextPinBoxes(Color.RED);
+
+        for (CountingEditText pinBox : mPinBoxes) {
+            assertEquals(1, pinBox.mTextColors);
+            assertEquals(0, pinBox.mFilters);
+            assertEquals(0, pinBox.mBackgrounds);
+            assertEquals(0, pinBox.mTextSizes);
+        }
+    }
+
+    @Test
+    public void sameValueSetsNothing() {
+        mPinView.setColorTextPinBoxes(Color.RED);
+        mPinView.setColorTextPinBoxes(Color.RED);
+        mPinView.setNativePinBox(mPinView.isNativePinBox());
+        mPinView.setTextSizePinBoxes(mPinView.getTextSizePinBoxes());
+
+        for (CountingEditText pinBox : mPinBoxes) {
+            assertEquals(1, pinBox.mTextColors);
+            assertEquals(0, pinBox.mFilters);
+            assertEquals(0, pinBox.mBackgrounds);
+            assertEquals(0, pinBox.mTextSizes);
+        }
+    }
+
+    @Test
+    public void numberCharactersOnlySetsFilters() {
+        mPinView.setNumberCharacters(2);
+
+        for (CountingEditText pinBox : mPinBoxes) {
+            assertEquals(1, pinBox.mFilters);
+            assertEquals(0, pinBox.mBackgrounds);
+            assertEquals(0, pinBox.mTextColors);
+            assertEquals(0, pinBox.mTextSizes);
+        }
+    }
+
+    @Test
+    public void backgroundOnlySetsBackground() {
+        mPinView.setNativePinBox(!mPinView.isNativePinBox());
+
+        for (CountingEditText pinBox : mPinBoxes) {
+            assertEquals(1, pinBox.mBackgrounds);
+            assertEquals(0, pinBox.mFilters);
+            assertEquals(0, pinBox.mTextColors);
+            assertEquals(0, pinBox.mTextSizes);
+        }
+    }
+
+    @Test
+    public void splitRestyleKeepsLayoutParams() {
+        ViewGroup.LayoutParams[] layoutParams = new ViewGroup.LayoutParams[mPinView.pinSplits.length];
+        for (int i = 0; i < layoutParams.length; i++) {
+            layoutParams[i] = mPinView.pinSplits[i].getLayoutParams();
+        }
+
+        mPinView.setColorSplit(Color.BLUE);
+        mPinView.setSizeSplit(mPinView.getSizeSplit() + 1);
+
+        for (int i = 0; i < layoutParams.length; i++) {
+            assertSame(layoutParams[i], mPinView.pinSplits[i].getLayoutParams());
+        }
+    }
+
+    /**
+     * Inflate every EditText as a {@link CountingEditText}, with the attributes of its layout
+     */
+    private static final class CountingFactory implements LayoutInflater.Factory2 {
+
+        @Override
+        public View onCreateView(View parent, String name, Context context, AttributeSet attrs) {
+            return onCreateView(name, context, attrs);
+        }
+
+        @Override
+        public View onCreateView(String name, Context context, AttributeSet attrs) {
+            return "EditText".equals(name) ? new CountingEditText(context, attrs) : null;
+        }
+    }
+
+    /**
+     * PinBox which counts the setters of the attributes restyled by {@link PinView}
+     */
+    private static final class CountingEditText extends EditText {
+
+        int mFilters;
+        int mBackgrounds;
+        int mTextColors;
+        int mTextSizes;
+
+        CountingEditText(Context context, AttributeSet attrs) {
+            super(context, attrs);
+        }
+
+        void reset() {
+            mFilters = 0;
+            mBackgrounds = 0;
+            mTextColors = 0;
+            mTextSizes = 0;
+        }
+
+        @Override
+        public void setFilters(InputFilter[] filters) {
+            super.setFilters(filters);
+            mFilters++;
+        }
+
+        @SuppressWarnings("deprecation")
+        @Override
+        public void setBackgroundDrawable(Drawable background) {
+            super.setBackgroundDrawable(background);
+            mBackgrounds++;
+        }
+
+        @Override
+        public void setTextColor(int color) {
+            super.setTextColor(color);
+            mTextColors++;
+        }
+
+        @Override
+        public void setTextSize(float size) {
+            super.setTextSize(size);
+            mTextSizes++;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.dpizarro.pinview.library;
+
+import android.os.Parcel;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * {@link PinViewSettings} read back from a {@link Parcel} are the interned settings which were written, and fields
+ * with their default value take no room.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class PinViewSettingsParcelTest {
+
+    private static PinViewSettings.Builder defaults() {
+        return new PinViewSettings.Builder()
+                .withNumberPinBoxes(PinViewSettings.DEFAULT_NUMBER_PIN_BOXES)
+                .withNumberCharacters(PinViewSettings.DEFAULT_NUMBER_CHARACTERS)
+                .withMaskPassword(PinViewSettings.DEFAULT_MASK_PASSWORD)
+                .withDeleteOnClick(PinViewSettings.DEFAULT_DELETE_ON_CLICK)
+                .withCustomDrawablePinBox(PinViewSettings.DEFAULT_CUSTOM_PIN_BOX)
+                .withColorTextPinBox(0xff000000)
+                .withColorTextTitles(0xff000000)
+                .withColorSplit(0xff000000)
+                .withTextSizePinBox(24f)
+                .withTextSizeTitles(14f)
+                .withSizeSplit(24f);
+    }
+
+    private static PinViewSettings roundTrip(PinViewSettings settings) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            settings.writeToParcel(parcel, 0);
+            parcel.setDataPosition(0);
+            return PinViewSettings.CREATOR.createFromParcel(parcel);
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    private static int parcelSize(PinViewSettings settings) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            settings.writeToParcel(parcel, 0);
+            return parcel.dataSize();
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    /**
+     * Flags are the first int of the parcel, they tell which fields with a default value are written
+     */
+    private static int parcelFlags(PinViewSettings settings) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            settings.writeToParcel(parcel, 0);
+            parcel.setDataPosition(0);
+            return parcel.readInt();
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    @Test
+    public void roundTripGivesInternedInstance() {
+        PinViewSettings settings = defaults()
+                .withPinTitles(new String[]{"Day", "Month", "Year"})
+                .withNumberPinBoxes(3)
+                .withNumberCharacters(2)
+                .withSplit("/")
+                .withKeyboardMandatory(true)
+                .withCanvasMode(true)
+                .build();
+
+        PinViewSettings read = roundTrip(settings);
+
+        assertSame(settings, read);
+        assertEquals(settings, read);
+        assertArrayEquals(new String[]{"Day", "Month", "Year"}, read.getPinTitles());
+        assertEquals(3, read.getNumberPinBoxes());
+        assertEquals(2, read.getNumberCharacters());
+        assertEquals("/", read.getSplit());
+    }
+
+    @Test
+    public void roundTripWithoutTitles() {
+        PinViewSettings settings = defaults().build();
+
+        PinViewSettings read = roundTrip(settings);
+
+        assertSame(settings, read);
+        assertNull(read.getPinTitles());
+        assertNull(read.getSplit());
+        assertEquals(PinViewSettings.DEFAULT_NUMBER_PIN_BOXES, read.getNumberPinBoxes());
+        assertEquals(PinViewSettings.DEFAULT_NUMBER_CHARACTERS, read.getNumberCharacters());
+        assertEquals(PinViewSettings.DEFAULT_CUSTOM_PIN_BOX, read.getCustomDrawablePinBox());
+    }
+
+    @Test
+    public void roundTripWithDefaultSplit() {
+        PinViewSettings settings = defaults().withSplit(PinViewSettings.DEFAULT_SPLIT).build();
+
+        PinViewSettings read = roundTrip(settings);
+
+        assertSame(settings, read);
+        assertEquals(PinViewSettings.DEFAULT_SPLIT, read.getSplit());
+    }
+
+    @Test
+    public void defaultSplitIsNotWritten() {
+        assertEquals(0, parcelFlags(defaults().withSplit(PinViewSettings.DEFAULT_SPLIT).build())
+                & PinViewSettings.FLAG_HAS_SPLIT);
+        assertEquals(PinViewSettings.FLAG_HAS_SPLIT, parcelFlags(defaults().withSplit("-").build())
+                & PinViewSettings.FLAG_HAS_SPLIT);
+    }
+
+    @Test
+    public void defaultFieldsAreNotWritten() {
+        PinViewSettings defaultSettings = defaults().build();
+        PinViewSettings customSettings = defaults()
+                .withNumberPinBoxes(6)
+                .withNumberCharacters(2)
+                .withSplit("-")
+                .withCustomDrawablePinBox(0)
+                .build();
+
+        assertTrue(parcelSize(defaultSettings) < parcelSize(customSettings));
+    }
+}
@@ -0,0 +1,139 @@
+package com.dpizarro.pinview.library;
+
+import android.app.Activity;
+import android.view.View;
+import android.view.ViewGroup;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * A {@link PinView} without titles has no title views at all: only PinBoxes and splits, flat in its {@link PinLayout}.
+ * Titles are created when they are set later.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class PinViewTitlesTest {
+
+    private static final int PIN_BOXES = 6;
+    private static final int WIDTH = 480;
+    private static final int HEIGHT = 800;
+
+    private PinView mPinView;
+
+    @Before
+    public void setUp() {
+        Activity activity = Robolectric.setupActivity(Activity.class);
+        mPinView = new PinView(activity, null);
+    }
+
+    private void assertFlat() {
+        for (int i = 0; i < mPinView.mPinLayout.getChildCount(); i++) {
+            assertFalse(mPinView.mPinLayout.getChildAt(i) instanceof ViewGroup);
+        }
+    }
+
+    @Test
+    public void noTitlesWithoutSplits() {
+        mPinView.setPin(PIN_BOXES);
+
+        assertEquals(0, mPinView.mPinLayout.getTitleCount());
+        assertEquals(PIN_BOXES, mPinView.mPinLayout.getChildCount());
+        assertFlat();
+    }
+
+    @Test
+    public void noTitlesWithSplits() {
+        mPinView.setSplit("-");
+        mPinView.setPin(PIN_BOXES);
+
+        assertEquals(0, mPinView.mPinLayout.getTitleCount());
+        assertEquals(2 * PIN_BOXES - 1, mPinView.mPinLayout.getChildCount());
+        assertFlat();
+    }
+
+    @Test
+    public void noTitlesNoTitleRow() {
+        mPinView.setSplit("-");
+        mPinView.setPin(PIN_BOXES);
+
+        layout();
+
+        PinLayout pinLayout = mPinView.mPinLayout;
+        assertTrue(mPinView.pinTitles == null || mPinView.pinTitles.length == 0);
+        int bottom = 0;
+        for (int i = 0; i < PIN_BOXES; i++) {
+            View pinBox = mPinView.getPinBox(i);
+            assertSame(pinLayout, pinBox.getParent());
+            assertEquals(pinLayout.getPaddingTop() + topMargin(pinBox), pinBox.getTop());
+            bottom = Math.max(bottom, pinBox.getBottom() + bottomMargin(pinBox));
+        }
+        assertEquals(bottom + pinLayout.getPaddingBottom(), pinLayout.getMeasuredHeight());
+    }
+
+    @Test
+    public void titlesAddTitleRow() {
+        mPinView.setPin(PIN_BOXES);
+        mPinView.setTitles(new String[]{"1", "2", "3", "4", "5", "6"});
+
+        layout();
+
+        PinLayout pinLayout = mPinView.mPinLayout;
+        View title = pinLayout.getChildAt(0);
+        assertEquals(pinLayout.getPaddingTop() + topMargin(title), title.getTop());
+        for (int i = 0; i < PIN_BOXES; i++) {
+            View pinBox = mPinView.getPinBox(i);
+            assertEquals(title.getBottom() + bottomMargin(title) + topMargin(pinBox), pinBox.getTop());
+        }
+    }
+
+    private static int topMargin(View child) {
+        return ((ViewGroup.MarginLayoutParams) child.getLayoutParams()).topMargin;
+    }
+
+    private static int bottomMargin(View child) {
+        return ((ViewGroup.MarginLayoutParams) child.getLayoutParams()).bottomMargin;
+    }
+
+    private void layout() {
+        mPinView.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.AT_MOST));
+        mPinView.layout(0, 0, mPinView.getMeasuredWidth(), mPinView.getMeasuredHeight());
+    }
+
+    @Test
+    public void titlesSetLater() {
+        mPinView.setSplit("-");
+        mPinView.setPin(PIN_BOXES);
+
+        mPinView.setTitles(new String[]{"1", "2", "3", "4", "5", "6"});
+
+        assertEquals(PIN_BOXES, mPinView.mPinLayout.getTitleCount());
+        assertEquals(3 * PIN_BOXES - 1, mPinView.mPinLayout.getChildCount());
+        assertFlat();
+    }
+}
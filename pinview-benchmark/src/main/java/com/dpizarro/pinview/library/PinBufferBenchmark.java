@@ -0,0 +1,140 @@
+package com.dpizarro.pinview.library;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.CharBuffer;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * Throughput of {@link PinBuffer}, the state behind every PinView, from 4 to 256 PinBoxes.
+ *
+ * Run with: ./gradlew :pinview-benchmark:jmh
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PinBufferBenchmark {
+
+    @Param({"4", "16", "64", "256"})
+    int numberPinBoxes;
+
+    @Param({"1", "4"})
+    int numberCharacters;
+
+    private final PinBuffer mPinBuffer = new PinBuffer();
+    private final char[][] mPins = new char[2][];
+    private final char[][] mStates = new char[2][];
+    private char[] mState;
+    private char[] mPinResults;
+    private int mNext;
+    private int mFocusedPinBox;
+    private char mNextCharacter;
+
+    /**
+     * Two different completed PINs, their saved states, one of them half cleared, and a completed PinBuffer
+     */
+    @Setup
+    public void setUp() {
+        mPinBuffer.resize(numberPinBoxes, numberCharacters);
+        for (int p = 0; p < mPins.length; p++) {
+            mPins[p] = new char[numberPinBoxes * numberCharacters];
+            for (int i = 0; i < mPins[p].length; i++) {
+                mPins[p][i] = (char) ('0' + (i + p) % 10);
+            }
+            mPinBuffer.fill(CharBuffer.wrap(mPins[p]), 0, true);
+            for (int i = p; i < numberPinBoxes; i += 2) {
+                mPinBuffer.clearPinBox(i);
+            }
+            mStates[p] = new char[mPinBuffer.stateLength()];
+            mPinBuffer.saveState(mStates[p]);
+        }
+        mState = new char[mPinBuffer.stateLength()];
+        mPinResults = new char[numberPinBoxes * numberCharacters];
+        mPinBuffer.fill(CharBuffer.wrap(mPins[0]), 0, true);
+        mNext = 0;
+        mFocusedPinBox = 0;
+        mNextCharacter = '0';
+    }
+
+    /**
+     * One typed character: append it, move to the next empty PinBox when the PinBox is filled and start again when
+     * the PIN is completed, as it is after {@link #setUp()}.
+     */
+    @Benchmark
+    public int keystroke() {
+        mPinBuffer.append(mFocusedPinBox, mNextCharacter);
+        mNextCharacter = mNextCharacter == '9' ? '0' : (char) (mNextCharacter + 1);
+        if (mPinBuffer.getPinBoxLength(mFocusedPinBox) == numberCharacters) {
+            int next = mPinBuffer.nextEmptyPinBoxWrapping(mFocusedPinBox + 1);
+            if (next == -1 && mPinBuffer.isComplete()) {
+                mPinBuffer.wipe();
+                next = 0;
+            }
+            mFocusedPinBox = next;
+        }
+        return mFocusedPinBox;
+    }
+
+    /**
+     * Every PinBox written at once, as a pasted code or a one-time code. Both PINs alternate, so every PinBox changes.
+     */
+    @Benchmark
+    public boolean bulkFill() {
+        mNext ^= 1;
+        return mPinBuffer.fill(CharBuffer.wrap(mPins[mNext]), 0, true);
+    }
+
+    /**
+     * Save the PinBoxes, as before a configuration change
+     */
+    @Benchmark
+    public int saveState() {
+        return mPinBuffer.saveState(mState);
+    }
+
+    /**
+     * Restore the saved PinBoxes, as after a configuration change. Both saved states alternate, so every PinBox
+     * changes.
+     */
+    @Benchmark
+    public boolean restoreState() {
+        mNext ^= 1;
+        return mPinBuffer.restoreState(mStates[mNext]);
+    }
+
+    /**
+     * Build the result of the completed PIN
+     */
+    @Benchmark
+    public int getPin() {
+        return mPinBuffer.getPin(mPinResults, 0);
+    }
+}
@@ -0,0 +1,445 @@
+package com.dpizarro.pinview.library;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * Current value of a PinView, kept in a reusable char array with a fixed number of slots per PinBox.
+ *
+ * It holds the state of the PinBoxes without any Android dependency: filling, next empty PinBox, completion and the
+ * PIN itself. The views of the library module only draw it and forward the input to it.
+ *
+ * The PIN can be copied into a caller-supplied array or {@link CharBuffer} without creating any String, and wiped
+ * when it isn't needed anymore:
+ *
+ *      char[] pin = new char[pinView.getPinBuffer().length()];
+ *      pinView.getPinBuffer().getPin(pin, 0);
+ *      //Do what you want
+ *      Arrays.fill(pin, '\0');
+ *      pinView.clear();
+ *
+ * As in {@code PinView#getPinResults()}, an empty PinBox is copied as a space. To save the PinBoxes themselves, with
+ * empty and partly filled PinBoxes where they are, see {@link #saveState(char[])}.
+ */
+public final class PinBuffer {
+
+    private static final char EMPTY_PIN_BOX = ' ';
+
+    private int mNumberPinBoxes;
+    private int mNumberCharacters;
+    private char[] mValues = new char[0];
+    private int[] mLengths = new int[0];
+    private long[] mFilled = new long[0];
+    private int mFilledCount;
+
+    PinBuffer() {
+    }
+
+    /**
+     * Change the number of PinBoxes or characters, keeping the characters which still fit.
+     *
+     * @param numberPinBoxes number of PinBoxes
+     * @param numberCharacters number of characters of each PinBox
+     */
+    void resize(int numberPinBoxes, int numberCharacters) {
+        if (numberPinBoxes == mNumberPinBoxes && numberCharacters == mNumberCharacters) {
+            return;
+        }
+        char[] values = new char[numberPinBoxes * numberCharacters];
+        int[] lengths = new int[numberPinBoxes];
+        long[] filled = new long[(numberPinBoxes + 63) >>> 6];
+        int filledCount = 0;
+        for (int i = 0; i < Math.min(numberPinBoxes, mNumberPinBoxes); i++) {
+            lengths[i] = Math.min(mLengths[i], numberCharacters);
+            System.arraycopy(mValues, i * mNumberCharacters, values, i * numberCharacters, lengths[i]);
+            if (lengths[i] > 0) {
+                filled[i >>> 6] |= 1L << i;
+                filledCount++;
+            }
+        }
+        Arrays.fill(mValues, '\0');
+        mValues = values;
+        mLengths = lengths;
+        mFilled = filled;
+        mFilledCount = filledCount;
+        mNumberPinBoxes = numberPinBoxes;
+        mNumberCharacters = numberCharacters;
+    }
+
+    public int getNumberPinBoxes() {
+        return mNumberPinBoxes;
+    }
+
+    public int getNumberCharacters() {
+        return mNumberCharacters;
+    }
+
+    /**
+     * Copy the value of a PinBox, without the characters which don't fit.
+     *
+     * @param index PinBox position
+     * @param value new value of the PinBox
+     */
+    void setPinBox(int index, CharSequence value) {
+        int length = Math.min(value.length(), mNumberCharacters);
+        int offset = index * mNumberCharacters;
+        for (int i = 0; i < length; i++) {
+            mValues[offset + i] = value.charAt(i);
+        }
+        Arrays.fill(mValues, offset + length, offset + mNumberCharacters, '\0');
+        setLength(index, length);
+    }
+
+    /**
+     * Add a character at the end of a PinBox
+     *
+     * @param index PinBox position
+     * @param character new character
+     * @return false if the PinBox was already full
+     */
+    boolean append(int index, char character) {
+        if (mLengths[index] >= mNumberCharacters) {
+            return false;
+        }
+        mValues[index * mNumberCharacters + mLengths[index]] = character;
+        setLength(index, mLengths[index] + 1);
+        return true;
+    }
+
+    /**
+     * Remove the last character of a PinBox
+     *
+     * @param index PinBox position
+     * @return false if the PinBox was already empty
+     */
+    boolean deleteLast(int index) {
+        if (mLengths[index] == 0) {
+            return false;
+        }
+        setLength(index, mLengths[index] - 1);
+        mValues[index * mNumberCharacters + mLengths[index]] = '\0';
+        return true;
+    }
+
+    /**
+     * Remove every character of a PinBox
+     *
+     * @param index PinBox position
+     */
+    void clearPinBox(int index) {
+        int offset = index * mNumberCharacters;
+        Arrays.fill(mValues, offset, offset + mNumberCharacters, '\0');
+        setLength(index, 0);
+    }
+
+    /**
+     * Write a PIN from a PinBox, filling each PinBox before the next one. Characters which aren't accepted are
+     * skipped, see {@link #isAccepted(boolean, char)}.
+     *
+     * @param pin new value, or null to clear the PinBoxes
+     * @param fromIndex first PinBox to write, the previous ones are kept
+     * @param numeric true if PinBoxes only accept digits
+     * @return true if any PinBox has changed
+     */
+    boolean fill(CharSequence pin, int fromIndex, boolean numeric) {
+        int length = pin != null ? pin.length() : 0;
+        int position = 0;
+        boolean changed = false;
+        for (int i = Math.max(fromIndex, 0); i < mNumberPinBoxes; i++) {
+            int offset = i * mNumberCharacters;
+            int count = 0;
+            while (count < mNumberCharacters && position < length) {
+                char character = pin.charAt(position++);
+                if (isAccepted(numeric, character)) {
+                    if (mValues[offset + count] != character) {
+                        mValues[offset + count] = character;
+                        changed = true;
+                    }
+                    count++;
+                }
+            }
+            if (mLengths[i] != count) {
+                Arrays.fill(mValues, offset + count, offset + mNumberCharacters, '\0');
+                setLength(i, count);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * @param numeric true if PinBoxes only accept digits
+     * @param character character to write in a PinBox
+     * @return true if the character can be written in a PinBox
+     */
+    static boolean isAccepted(boolean numeric, char character) {
+        if (numeric) {
+            return character >= '0' && character <= '9';
+        }
+        return !Character.isWhitespace(character);
+    }
+
+    /**
+     * Keep the length of a PinBox and whether it is filled.
+     */
+    private void setLength(int index, int length) {
+        boolean wasFilled = mLengths[index] > 0;
+        mLengths[index] = length;
+        if (wasFilled != length > 0) {
+            mFilled[index >>> 6] ^= 1L << index;
+            mFilledCount += wasFilled ? -1 : 1;
+        }
+    }
+
+    /**
+     * @param index PinBox position
+     * @return true if the PinBox has at least one character
+     */
+    public boolean isPinBoxFilled(int index) {
+        return (mFilled[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Find the first empty PinBox from a position, without going back to the first one.
+     *
+     * @param fromIndex first PinBox position to check
+     * @return position of the empty PinBox or -1 if every PinBox from fromIndex is filled
+     */
+    public int nextEmptyPinBox(int fromIndex) {
+        if (fromIndex < 0) {
+            fromIndex = 0;
+        }
+        if (fromIndex >= mNumberPinBoxes) {
+            return -1;
+        }
+        int word = fromIndex >>> 6;
+        long empty = ~mFilled[word] & (-1L << fromIndex);
+        while (true) {
+            if (empty != 0) {
+                int index = (word << 6) + Long.numberOfTrailingZeros(empty);
+                return index < mNumberPinBoxes ? index : -1;
+            }
+            if (++word == mFilled.length) {
+                return -1;
+            }
+            empty = ~mFilled[word];
+        }
+    }
+
+    /**
+     * Find the first empty PinBox from a position, going back to the first one after the last one.
+     *
+     * @param fromIndex first PinBox position to check
+     * @return position of the empty PinBox or -1 if every PinBox is filled
+     */
+    public int nextEmptyPinBoxWrapping(int fromIndex) {
+        int index = nextEmptyPinBox(fromIndex);
+        return index != -1 || fromIndex <= 0 ? index : nextEmptyPinBox(0);
+    }
+
+    /**
+     * Find the first PinBox which isn't full, the next one to write when characters are written one after another.
+     *
+     * @param fromIndex first PinBox position to check
+     * @return position of the PinBox or -1 if every PinBox from fromIndex is full
+     */
+    public int nextIncompletePinBox(int fromIndex) {
+        for (int i = Math.max(fromIndex, 0); i < mNumberPinBoxes; i++) {
+            if (mLengths[i] < mNumberCharacters) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param index PinBox position
+     * @return number of characters of the PinBox
+     */
+    public int getPinBoxLength(int index) {
+        return mLengths[index];
+    }
+
+    /**
+     * Copy the characters of a PinBox
+     *
+     * @param index PinBox position
+     * @param dst destination array
+     * @param offset first position to write in dst
+     * @return number of copied characters
+     */
+    public int getPinBox(int index, char[] dst, int offset) {
+        System.arraycopy(mValues, index * mNumberCharacters, dst, offset, mLengths[index]);
+        return mLengths[index];
+    }
+
+    /**
+     * @return true if no PinBox is empty
+     */
+    public boolean isComplete() {
+        return mNumberPinBoxes > 0 && mFilledCount == mNumberPinBoxes;
+    }
+
+    /**
+     * @return number of characters copied by {@link #getPin(char[], int)}
+     */
+    public int length() {
+        int length = 0;
+        for (int i = 0; i < mNumberPinBoxes; i++) {
+            length += mLengths[i] == 0 ? 1 : mLengths[i];
+        }
+        return length;
+    }
+
+    /**
+     * Copy the current PIN into an array
+     *
+     * @param dst destination array, at least {@link #length()} characters long from offset
+     * @param offset first position to write in dst
+     * @return number of copied characters
+     */
+    public int getPin(char[] dst, int offset) {
+        int position = offset;
+        for (int i = 0; i < mNumberPinBoxes; i++) {
+            if (mLengths[i] == 0) {
+                dst[position++] = EMPTY_PIN_BOX;
+            } else {
+                System.arraycopy(mValues, i * mNumberCharacters, dst, position, mLengths[i]);
+                position += mLengths[i];
+            }
+        }
+        return position - offset;
+    }
+
+    /**
+     * Compare the current PIN with a saved one, without copying it
+     *
+     * @param pin PIN copied by {@link #getPin(char[], int)}
+     * @return true if the current PIN has the same characters
+     */
+    public boolean pinEquals(char[] pin) {
+        int position = 0;
+        for (int i = 0; i < mNumberPinBoxes; i++) {
+            if (mLengths[i] == 0) {
+                if (position >= pin.length || pin[position++] != EMPTY_PIN_BOX) {
+                    return false;
+                }
+                continue;
+            }
+            if (position + mLengths[i] > pin.length) {
+                return false;
+            }
+            int offset = i * mNumberCharacters;
+            for (int j = 0; j < mLengths[i]; j++) {
+                if (mValues[offset + j] != pin[position++]) {
+                    return false;
+                }
+            }
+        }
+        return position == pin.length;
+    }
+
+    /**
+     * Copy the current PIN into a {@link CharBuffer}, from its current position.
+     *
+     * @param dst destination buffer, with at least {@link #length()} characters remaining
+     * @return number of copied characters
+     */
+    public int getPin(CharBuffer dst) {
+        int position = dst.position();
+        for (int i = 0; i < mNumberPinBoxes; i++) {
+            if (mLengths[i] == 0) {
+                dst.put(EMPTY_PIN_BOX);
+            } else {
+                dst.put(mValues, i * mNumberCharacters, mLengths[i]);
+            }
+        }
+        return dst.position() - position;
+    }
+
+    /**
+     * Build a String with the current PIN, see {@code PinView#getPinResults()}
+     *
+     * @return current PIN
+     */
+    String toPinResults() {
+        char[] pinResults = new char[length()];
+        getPin(pinResults, 0);
+        String value = new String(pinResults);
+        Arrays.fill(pinResults, '\0');
+        return value;
+    }
+
+    /**
+     * @return number of characters copied by {@link #saveState(char[])}
+     */
+    public int stateLength() {
+        return mValues.length;
+    }
+
+    /**
+     * Copy every PinBox into its own slot of {@link #getNumberCharacters()} characters, the unused characters of a
+     * slot as '\0'. Unlike {@link #getPin(char[], int)}, empty and partly filled PinBoxes are kept as they are.
+     *
+     * @param dst destination array, at least {@link #stateLength()} characters long
+     * @return number of copied characters
+     */
+    public int saveState(char[] dst) {
+        System.arraycopy(mValues, 0, dst, 0, mValues.length);
+        return mValues.length;
+    }
+
+    /**
+     * Write every PinBox from a state copied by {@link #saveState(char[])}, one slot per PinBox: each PinBox gets the
+     * characters of its slot until the first '\0', without skipping any PinBox. PinBoxes without a slot are cleared.
+     *
+     * @param state saved PinBoxes, with the current number of characters per PinBox
+     * @return true if any PinBox has changed
+     */
+    boolean restoreState(char[] state) {
+        boolean changed = false;
+        for (int i = 0; i < mNumberPinBoxes; i++) {
+            int offset = i * mNumberCharacters;
+            int length = 0;
+            while (length < mNumberCharacters && offset + length < state.length && state[offset + length] != '\0') {
+                if (mValues[offset + length] != state[offset + length]) {
+                    mValues[offset + length] = state[offset + length];
+                    changed = true;
+                }
+                length++;
+            }
+            if (mLengths[i] != length) {
+                Arrays.fill(mValues, offset + length, offset + mNumberCharacters, '\0');
+                setLength(i, length);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Overwrite every character, so the PIN is not kept in memory.
+     * It only changes this buffer, use {@code PinView#clear()} to clear the PinBoxes too.
+     */
+    public void wipe() {
+        Arrays.fill(mValues, '\0');
+        Arrays.fill(mLengths, 0);
+        Arrays.fill(mFilled, 0L);
+        mFilledCount = 0;
+    }
+}
@@ -0,0 +1,129 @@
+package com.dpizarro.pinview.library;
+
+import org.junit.Test;
+
+import java.nio.CharBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+public class PinBufferTest {
+
+    private static PinBuffer newPinBuffer(int numberPinBoxes, int numberCharacters) {
+        PinBuffer pinBuffer = new PinBuffer();
+        pinBuffer.resize(numberPinBoxes, numberCharacters);
+        return pinBuffer;
+    }
+
+    private static char[] saveState(PinBuffer pinBuffer) {
+        char[] state = new char[pinBuffer.stateLength()];
+        pinBuffer.saveState(state);
+        return state;
+    }
+
+    @Test
+    public void restoreKeepsEmptyPinBoxes() {
+        PinBuffer pinBuffer = newPinBuffer(4, 1);
+        pinBuffer.setPinBox(2, "5");
+        pinBuffer.setPinBox(3, "6");
+        assertEquals("  56", pinBuffer.toPinResults());
+
+        PinBuffer restored = newPinBuffer(4, 1);
+        assertTrue(restored.restoreState(saveState(pinBuffer)));
+
+        assertEquals("  56", restored.toPinResults());
+        assertFalse(restored.isPinBoxFilled(0));
+        assertFalse(restored.isPinBoxFilled(1));
+        assertEquals(0, restored.nextEmptyPinBox(0));
+        assertFalse(restored.isComplete());
+    }
+
+    @Test
+    public void restoreKeepsPartlyFilledPinBoxes() {
+        PinBuffer pinBuffer = newPinBuffer(2, 2);
+        pinBuffer.setPinBox(0, "1");
+        pinBuffer.setPinBox(1, "23");
+
+        PinBuffer restored = newPinBuffer(2, 2);
+        assertTrue(restored.restoreState(saveState(pinBuffer)));
+
+        assertEquals(1, restored.getPinBoxLength(0));
+        assertEquals(2, restored.getPinBoxLength(1));
+        char[] pinBox = new char[2];
+        assertEquals(1, restored.getPinBox(0, pinBox, 0));
+        assertEquals('1', pinBox[0]);
+        assertEquals(2, restored.getPinBox(1, pinBox, 0));
+        assertArrayEquals(new char[]{'2', '3'}, pinBox);
+        assertEquals("123", restored.toPinResults());
+    }
+
+    @Test
+    public void restoreSameStateChangesNothing() {
+        PinBuffer pinBuffer = newPinBuffer(4, 2);
+        pinBuffer.setPinBox(1, "7");
+        pinBuffer.setPinBox(3, "89");
+
+        assertFalse(pinBuffer.restoreState(saveState(pinBuffer)));
+        assertEquals(" 7 89", pinBuffer.toPinResults());
+    }
+
+    @Test
+    public void fillReportsChanges() {
+        PinBuffer pinBuffer = newPinBuffer(4, 1);
+        assertTrue(pinBuffer.fill(CharBuffer.wrap("1234"), 0, true));
+        assertTrue(pinBuffer.isComplete());
+
+        assertFalse(pinBuffer.fill(CharBuffer.wrap("1234"), 0, true));
+        assertTrue(pinBuffer.fill(CharBuffer.wrap("1235"), 0, true));
+        assertTrue(pinBuffer.isComplete());
+        assertEquals("1235", pinBuffer.toPinResults());
+        assertTrue(pinBuffer.fill(CharBuffer.wrap("12"), 0, true));
+        assertEquals(2, pinBuffer.nextEmptyPinBox(0));
+    }
+
+    @Test
+    public void fillSkipsCharactersNotAccepted() {
+        PinBuffer pinBuffer = newPinBuffer(3, 2);
+        pinBuffer.fill(CharBuffer.wrap("1 2-3"), 0, true);
+
+        assertEquals("123 ", pinBuffer.toPinResults());
+        assertEquals(2, pinBuffer.nextEmptyPinBox(0));
+        assertEquals(1, pinBuffer.nextIncompletePinBox(0));
+
+        pinBuffer.fill(CharBuffer.wrap("12345"), 0, true);
+        assertEquals(-1, pinBuffer.nextEmptyPinBox(0));
+        assertEquals(2, pinBuffer.nextIncompletePinBox(0));
+        pinBuffer.fill(CharBuffer.wrap("6"), 2, true);
+        assertEquals(2, pinBuffer.nextIncompletePinBox(0));
+        pinBuffer.fill(CharBuffer.wrap("67"), 2, true);
+        assertEquals(-1, pinBuffer.nextIncompletePinBox(0));
+        assertEquals("123467", pinBuffer.toPinResults());
+    }
+
+    @Test
+    public void restoreClearsPinBoxesWithoutSlot() {
+        PinBuffer pinBuffer = newPinBuffer(3, 1);
+        pinBuffer.fill(CharBuffer.wrap("123"), 0, true);
+
+        assertTrue(pinBuffer.restoreState(new char[]{'4'}));
+        assertEquals("4  ", pinBuffer.toPinResults());
+        assertEquals(1, pinBuffer.nextEmptyPinBox(0));
+    }
+}